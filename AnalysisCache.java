@@ -0,0 +1,209 @@
+package analyzer;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the full analysis of every column of the loaded model, so switching
+ * between columns only has to look a result up.
+ *
+ * analyzeAll fills the cache in the background with one task per column on
+ * a pool of its own, one thread short of the processor count, so the pass
+ * stays off the common fork/join pool the selected column, the correlation
+ * matrix and the trend line reduce on, and at most that many exact-quantile
+ * copies of columns exist at once. Each task runs its own engine
+ * sequentially; the columns are the unit of parallelism. While an analysis
+ * the user is waiting for runs between beginPriority and endPriority,
+ * columns not yet started are held back. clear stops a running pass after
+ * the columns already in progress without waiting for them; awaitPass waits
+ * for those, so the model's storage can be released safely afterwards.
+ *
+ * @author Lukasz Golinski
+ */
+public class AnalysisCache {
+    
+    private static final int THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    
+    private final Map<String, ColumnAnalysis> results;
+    private final Map<Integer, Integer> running;
+    private final ExecutorService pool;
+    private boolean approximateQuantiles;
+    private int generation;
+    private int priority;
+    
+    public AnalysisCache() {
+        this.results = new ConcurrentHashMap<>();
+        this.running = new HashMap<>();
+        
+        AtomicInteger threads = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(THREADS, task -> {
+            Thread thread = new Thread(task, "column-summary-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    public ColumnAnalysis get(String columnName) {
+        return results.get(columnName);
+    }
+    
+    public synchronized void put(ColumnAnalysis analysis) {
+        if (analysis.usesApproximateQuantiles() == approximateQuantiles) {
+            results.put(analysis.getColumnName(), analysis);
+        }
+    }
+    
+    public synchronized boolean usesApproximateQuantiles() {
+        return approximateQuantiles;
+    }
+    
+    /*
+     * Results computed under the other setting no longer apply, so changing
+     * it empties the cache.
+     */
+    public void setApproximateQuantiles(boolean approximateQuantiles) {
+        if (approximateQuantiles != usesApproximateQuantiles()) {
+            clear();
+            synchronized (this) {
+                this.approximateQuantiles = approximateQuantiles;
+            }
+        }
+    }
+    
+    /*
+     * Analyzes every column of the model that is not cached yet and hands
+     * each new result to the listener from the worker thread that produced
+     * it. Blocks until the pass is finished or superseded by clear.
+     */
+    public void analyzeAll(DataModel model, Consumer<ColumnAnalysis> listener) {
+        int pass;
+        boolean approximate;
+        synchronized (this) {
+            pass = generation;
+            approximate = approximateQuantiles;
+        }
+        
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (String columnName : model.getColumnNames()) {
+            if (results.containsKey(columnName) || model.getColumn(columnName).validCount() == 0) {
+                continue;
+            }
+            
+            tasks.add(() -> {
+                if (!begin(pass)) {
+                    return null;
+                }
+                try {
+                    StatisticsEngine engine = new StatisticsEngine();
+                    engine.setParallel(false);
+                    engine.setApproximateQuantiles(approximate);
+                    engine.loadData(model.getColumn(columnName), model.getColumnStatistics(columnName));
+                    
+                    ColumnAnalysis analysis = ColumnAnalysis.of(columnName, engine);
+                    if (store(pass, analysis)) {
+                        listener.accept(analysis);
+                    }
+                } finally {
+                    end(pass);
+                }
+                return null;
+            });
+        }
+        
+        try {
+            pool.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /*
+     * Holds back the columns of the background pass that have not started
+     * yet, until every beginPriority has been matched by endPriority.
+     * Columns already in progress run on.
+     */
+    public synchronized void beginPriority() {
+        priority++;
+    }
+    
+    public synchronized void endPriority() {
+        priority--;
+        notifyAll();
+    }
+    
+    /*
+     * Discards every result and stops the running pass without waiting for
+     * the columns it is still working on. Returns the last pass stopped, for
+     * awaitPass.
+     */
+    public synchronized int clear() {
+        results.clear();
+        notifyAll();
+        return generation++;
+    }
+    
+    /*
+     * Waits until no column of the given pass, or of any earlier one, is
+     * still being analyzed. Passes started after it are not waited for.
+     */
+    public synchronized void awaitPass(int pass) {
+        boolean interrupted = false;
+        while (isRunning(pass)) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private boolean isRunning(int pass) {
+        for (int started : running.keySet()) {
+            if (started <= pass) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private synchronized boolean begin(int pass) {
+        boolean interrupted = false;
+        while (priority > 0 && pass == generation) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        
+        if (pass != generation) {
+            return false;
+        }
+        running.merge(pass, 1, Integer::sum);
+        return true;
+    }
+    
+    private synchronized void end(int pass) {
+        running.computeIfPresent(pass, (started, count) -> count > 1 ? count - 1 : null);
+        notifyAll();
+    }
+    
+    private synchronized boolean store(int pass, ColumnAnalysis analysis) {
+        if (pass != generation) {
+            return false;
+        }
+        results.put(analysis.getColumnName(), analysis);
+        return true;
+    }
+}
@@ -1,118 +1,437 @@
 package analyzer;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * @author Lukasz Golinski
  */
 public class CSVLoader {
     
+    private static final int STREAM_BATCH_SIZE = 8192;
+    private static final long PARALLEL_THRESHOLD = 64L << 20;
+    private static final long MIN_CHUNK_SIZE = CSVTokenizer.MAX_QUOTED_RECORD;
+    private static final long MAX_CHUNK_SIZE = 256L << 20;
+    
+    /* Quoting states of the chunk splitter, as CSVTokenizer reads a record */
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_IN_QUOTED = 3;
+    private static final int BLANK_AFTER_QUOTE = 4;
+    private static final int STATES = 5;
+    
+    private static final byte ORDINARY = 0;
+    private static final byte BLANK = 1;
+    private static final byte QUOTE = 2;
+    private static final byte DELIMITER = 3;
+    private static final byte LINE_FEED = 4;
+    private static final byte CARRIAGE_RETURN = 5;
+    
+    private static final int[][] TRANSITIONS = {
+        /* ordinary, blank, quote, delimiter, \n, \r */
+        {UNQUOTED, FIELD_START, QUOTED, FIELD_START, FIELD_START, FIELD_START},
+        {UNQUOTED, UNQUOTED, UNQUOTED, FIELD_START, FIELD_START, FIELD_START},
+        {QUOTED, QUOTED, QUOTE_IN_QUOTED, QUOTED, QUOTED, QUOTED},
+        {QUOTED, BLANK_AFTER_QUOTE, QUOTED, FIELD_START, FIELD_START, FIELD_START},
+        {QUOTED, BLANK_AFTER_QUOTE, QUOTE_IN_QUOTED, FIELD_START, FIELD_START, FIELD_START}
+    };
+    
     private char delimiter;
     private boolean hasHeader;
+    private int parallelism;
+    private Locale numberLocale;
+    private ColumnStorage columnStorage;
+    private RecordRetention recordRetention;
     private String lastError;
     
     public CSVLoader() {
         this.delimiter = ',';
         this.hasHeader = true;
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+        this.columnStorage = ColumnStorage.HEAP;
+        this.recordRetention = RecordRetention.NONE;
         this.lastError = null;
     }
     
     public CSVLoader(char delimiter, boolean hasHeader) {
         this.delimiter = delimiter;
         this.hasHeader = hasHeader;
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+        this.columnStorage = ColumnStorage.HEAP;
+        this.recordRetention = RecordRetention.NONE;
         this.lastError = null;
     }
     
     public DataModel loadFile(File file) {
+        if (parallelism > 1 && file.length() >= PARALLEL_THRESHOLD) {
+            return loadFileParallel(file);
+        }
+        
         DataModel model = new DataModel();
         model.setSourceFileName(file.getName());
+        model.setColumnStorage(columnStorage);
+        model.setRecordRetention(recordRetention);
         
-        try {
-            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
             
-            if (lines.isEmpty()) {
-                lastError = "File is empty";
+            CSVTokenizer tokenizer = new CSVTokenizer(channel, delimiter);
+            
+            if (!initializeColumns(model, tokenizer)) {
                 return model;
             }
             
-            delimiter = detectDelimiter(lines.get(0));
+            List<String> columnNames = model.getColumnNames();
+            RecordBatch batch = new RecordBatch(columnNames.size(), createNumberParser(), recordRetention);
+            RecordBatch totals = new RecordBatch(0, null, RecordRetention.NONE);
             
-            int startLine = 0;
-            String[] headers;
+            boolean hasRecord = hasHeader ? tokenizer.nextRecord() : true;
             
-            if (hasHeader && !lines.isEmpty()) {
-                headers = parseLine(lines.get(0));
-                startLine = 1;
+            for (; hasRecord; hasRecord = tokenizer.nextRecord()) {
+                parseRecord(batch, tokenizer);
                 
-                for (int i = 0; i < headers.length; i++) {
-                    String columnName = headers[i].trim();
-                    if (columnName.isEmpty()) {
-                        columnName = "Column_" + (i + 1);
-                    }
-                    model.addColumn(columnName);
-                }
-            } else {
-                String[] firstLineParts = parseLine(lines.get(0));
-                for (int i = 0; i < firstLineParts.length; i++) {
-                    model.addColumn("Column_" + (i + 1));
+                if (batch.totalRecords >= STREAM_BATCH_SIZE) {
+                    mergeBatch(model, columnNames, batch, totals);
                 }
             }
             
-            int totalRecords = 0;
-            int validRecords = 0;
-            int skippedRecords = 0;
+            mergeBatch(model, columnNames, batch, totals);
+            
+            model.setTotalRecords(totals.totalRecords);
+            model.setValidRecords(totals.validRecords);
+            model.setSkippedRecords(totals.skippedRecords);
+        
+        } catch (IOException ex) {
+            lastError = "Error reading file: " + ex.getMessage();
+        } catch (UncheckedIOException ex) {
+            lastError = "Error storing column data: " + ex.getCause().getMessage();
+        } catch (Exception ex) {
+            lastError = "Error parsing file: " + ex.getMessage();
+        }
+        
+        return model;
+    }
+    
+    public DataModel loadFileParallel(File file) {
+        DataModel model = new DataModel();
+        model.setSourceFileName(file.getName());
+        model.setColumnStorage(columnStorage);
+        model.setRecordRetention(recordRetention);
+        
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            
+            if (fileSize == 0) {
+                lastError = "File is empty";
+                return model;
+            }
+            
+            MappedByteBuffer headRegion = mapRegion(channel, 0, Math.min(fileSize, Integer.MAX_VALUE));
+            CSVTokenizer headTokenizer = new CSVTokenizer(headRegion, delimiter);
+            
+            if (!initializeColumns(model, headTokenizer)) {
+                return model;
+            }
             
             List<String> columnNames = model.getColumnNames();
+            int columnCount = columnNames.size();
+            long dataStart = hasHeader ? headTokenizer.offset() : 0;
             
-            for (int lineIndex = startLine; lineIndex < lines.size(); lineIndex++) {
-                String line = lines.get(lineIndex).trim();
-                
-                if (line.isEmpty()) {
-                    continue;
-                }
-                
-                totalRecords++;
-                String[] values = parseLine(line);
-                
-                boolean hasValidValue = false;
-                
-                for (int col = 0; col < columnNames.size() && col < values.length; col++) {
-                    String columnName = columnNames.get(col);
-                    String rawValue = values[col].trim();
-                    
-                    Double numericValue = parseNumericValue(rawValue);
-                    
-                    if (numericValue != null) {
-                        model.addValueToColumn(columnName, numericValue);
-                        hasValidValue = true;
-                    }
-                }
-                
-                model.addRawRecord(values);
-                
-                if (hasValidValue) {
-                    validRecords++;
-                } else {
-                    skippedRecords++;
-                }
+            if (dataStart >= fileSize) {
+                return model;
             }
             
-            model.setTotalRecords(totalRecords);
-            model.setValidRecords(validRecords);
-            model.setSkippedRecords(skippedRecords);
+            long[] bounds = findChunkBoundaries(channel, dataStart, fileSize, pool);
+            
+            /*
+             * Chunks are merged in file order as each completes, and the next
+             * one is only submitted once a merged batch has been let go, so
+             * at most one chunk per thread plus one waiting to be merged is
+             * held at a time.
+             */
+            int inFlight = Math.max(1, parallelism) + 1;
+            Deque<Future<RecordBatch>> chunks = new ArrayDeque<>();
+            RecordBatch totals = new RecordBatch(0, null, RecordRetention.NONE);
+            int next = 0;
             
+            while (next + 1 < bounds.length || !chunks.isEmpty()) {
+                while (chunks.size() < inFlight && next + 1 < bounds.length) {
+                    long from = bounds[next];
+                    long to = bounds[next + 1];
+                    chunks.add(pool.submit(() -> parseChunk(channel, from, to, columnCount)));
+                    next++;
+                }
+                mergeBatch(model, columnNames, chunks.poll().get(), totals);
+            }
+            
+            model.setTotalRecords(totals.totalRecords);
+            model.setValidRecords(totals.validRecords);
+            model.setSkippedRecords(totals.skippedRecords);
+        
         } catch (IOException ex) {
             lastError = "Error reading file: " + ex.getMessage();
+        } catch (UncheckedIOException ex) {
+            lastError = "Error storing column data: " + ex.getCause().getMessage();
+        } catch (ExecutionException ex) {
+            lastError = "Error parsing file: " + ex.getCause().getMessage();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            lastError = "Loading interrupted";
         } catch (Exception ex) {
             lastError = "Error parsing file: " + ex.getMessage();
+        } finally {
+            pool.shutdownNow();
         }
         
         return model;
     }
     
+    /*
+     * Detects the delimiter from the first line and reads the first record. With
+     * a header that record names the columns and is consumed; without one it
+     * only fixes the column count and is left current for the caller to parse.
+     */
+    private boolean initializeColumns(DataModel model, CSVTokenizer tokenizer) throws IOException {
+        String firstLine = tokenizer.peekLine();
+        
+        if (firstLine == null) {
+            lastError = "File is empty";
+            return false;
+        }
+        
+        delimiter = detectDelimiter(firstLine);
+        tokenizer.setDelimiter(delimiter);
+        
+        if (!tokenizer.nextRecord()) {
+            lastError = "File is empty";
+            return false;
+        }
+        
+        for (int i = 0; i < tokenizer.fieldCount(); i++) {
+            String columnName = hasHeader ? tokenizer.fieldText(i) : "";
+            if (columnName.isEmpty()) {
+                columnName = "Column_" + (i + 1);
+            }
+            model.addColumn(columnName);
+        }
+        
+        return true;
+    }
+    
+    /*
+     * Splits [dataStart, fileSize) into chunks that start at a record boundary.
+     * Whether a byte is quoted depends on everything before it, so each
+     * segment is scanned in parallel once from every state the quoting rules
+     * of CSVTokenizer can be in at its first byte, noting the state at its
+     * end and its first record boundary. The state that actually enters a
+     * segment is then known once the segments before it are resolved, in
+     * order. A quoted field still open across a whole segment is longer than
+     * the tokenizer lets one run, so, like the tokenizer, the splitter takes
+     * it as an unmatched quote.
+     */
+    private long[] findChunkBoundaries(FileChannel channel, long dataStart, long fileSize,
+                                       ExecutorService pool) throws Exception {
+        long dataSize = fileSize - dataStart;
+        long segmentSize = Math.max(MIN_CHUNK_SIZE, dataSize / (Math.max(1, parallelism) * 4L) + 1);
+        segmentSize = Math.min(segmentSize, MAX_CHUNK_SIZE);
+        byte separator = (byte) delimiter;
+        
+        List<Long> starts = new ArrayList<>();
+        List<Future<SegmentScan>> scans = new ArrayList<>();
+        for (long start = dataStart; start < fileSize; start += segmentSize) {
+            long from = start;
+            long to = Math.min(fileSize, start + segmentSize);
+            starts.add(from);
+            scans.add(pool.submit(() -> scanSegment(mapRegion(channel, from, to), separator)));
+        }
+        
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(dataStart);
+        int state = FIELD_START;
+        
+        for (int i = 0; i < scans.size(); i++) {
+            SegmentScan scan = scans.get(i).get();
+            
+            if (i > 0) {
+                long newline = scan.firstBoundary[state];
+                if (newline >= 0) {
+                    long boundary = starts.get(i) + newline + 1;
+                    if (boundary < fileSize && boundary > bounds.get(bounds.size() - 1)) {
+                        bounds.add(boundary);
+                    }
+                }
+            }
+            
+            state = scan.quotedThroughout[state] ? UNQUOTED : scan.endState[state];
+        }
+        
+        bounds.add(fileSize);
+        
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+            if (i > 0 && result[i] - result[i - 1] > Integer.MAX_VALUE) {
+                throw new IOException("Record spans more than 2 GB");
+            }
+        }
+        return result;
+    }
+    
+    /*
+     * Runs the quoting state machine over a segment from each possible entry
+     * state at once. Only line feeds are taken as chunk boundaries; a \r\n
+     * record ends after its \n.
+     */
+    private static SegmentScan scanSegment(MappedByteBuffer buffer, byte delimiter) {
+        byte[] classes = new byte[256];
+        for (int b = 0; b <= ' '; b++) {
+            classes[b] = BLANK;
+        }
+        classes['"'] = QUOTE;
+        classes['\n'] = LINE_FEED;
+        classes['\r'] = CARRIAGE_RETURN;
+        classes[delimiter & 0xFF] = DELIMITER;
+        
+        SegmentScan scan = new SegmentScan();
+        int[] states = new int[STATES];
+        for (int s = 0; s < STATES; s++) {
+            states[s] = s;
+            scan.firstBoundary[s] = -1;
+            scan.quotedThroughout[s] = s >= QUOTED;
+        }
+        
+        int limit = buffer.limit();
+        boolean settled = false;
+        boolean quotesOnly = false;
+        
+        for (int i = 0; i < limit; i++) {
+            /*
+             * Once every entry state is inside a quoted field, or outside one
+             * with its boundary found, only the next quote matters; the
+             * unquoted states at that point follow from the bytes before it.
+             */
+            if (quotesOnly) {
+                int from = i;
+                while (i < limit && buffer.get(i) != '"') {
+                    i++;
+                }
+                for (int s = 0; s < STATES; s++) {
+                    if (states[s] != QUOTED) {
+                        states[s] = stateBefore(buffer, classes, from, i, states[s]);
+                    }
+                }
+                if (i == limit) {
+                    break;
+                }
+            }
+            
+            int type = classes[buffer.get(i) & 0xFF];
+            
+            /* Inside a plain or a quoted field only a few bytes change anything */
+            if (settled && type <= BLANK) {
+                continue;
+            }
+            
+            settled = true;
+            quotesOnly = true;
+            for (int s = 0; s < STATES; s++) {
+                int current = states[s];
+                if (type == LINE_FEED && current != QUOTED && scan.firstBoundary[s] < 0) {
+                    scan.firstBoundary[s] = i;
+                }
+                int next = TRANSITIONS[current][type];
+                if (next < QUOTED) {
+                    scan.quotedThroughout[s] = false;
+                }
+                states[s] = next;
+                settled &= next == UNQUOTED || next == QUOTED;
+                quotesOnly &= next == QUOTED || next < QUOTED && scan.firstBoundary[s] >= 0;
+            }
+        }
+        
+        System.arraycopy(states, 0, scan.endState, 0, STATES);
+        return scan;
+    }
+    
+    /*
+     * The state outside quotes after the quote-free bytes [from, to), given
+     * the state at from: only the last byte that is not blank decides it.
+     */
+    private static int stateBefore(MappedByteBuffer buffer, byte[] classes, int from, int to, int state) {
+        for (int i = to - 1; i >= from; i--) {
+            int type = classes[buffer.get(i) & 0xFF];
+            if (type != BLANK) {
+                return type == ORDINARY ? UNQUOTED : FIELD_START;
+            }
+        }
+        return state;
+    }
+    
+    private RecordBatch parseChunk(FileChannel channel, long from, long to, int columnCount) throws IOException {
+        CSVTokenizer tokenizer = new CSVTokenizer(mapRegion(channel, from, to), delimiter);
+        RecordBatch batch = new RecordBatch(columnCount, createNumberParser(), recordRetention);
+        
+        while (tokenizer.nextRecord()) {
+            parseRecord(batch, tokenizer);
+        }
+        
+        return batch;
+    }
+    
+    private static MappedByteBuffer mapRegion(FileChannel channel, long from, long to) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+    }
+    
+    private void parseRecord(RecordBatch batch, CSVTokenizer tokenizer) {
+        batch.totalRecords++;
+        
+        boolean hasValidValue = false;
+        int fieldCount = Math.min(batch.columnCount(), tokenizer.fieldCount());
+        int row = batch.addRow();
+        
+        for (int col = 0; col < fieldCount; col++) {
+            if (tokenizer.parseNumber(col, batch.parser)) {
+                batch.values[col][row] = batch.parser.getValue();
+                hasValidValue = true;
+            }
+        }
+        
+        if (batch.retention == RecordRetention.FULL) {
+            batch.records.add(tokenizer.fieldTexts());
+        } else if (batch.retention == RecordRetention.DICTIONARY) {
+            batch.table.addRecord(tokenizer.fieldTexts());
+        }
+        
+        if (hasValidValue) {
+            batch.validRecords++;
+        } else {
+            batch.skippedRecords++;
+        }
+    }
+    
+    private void mergeBatch(DataModel model, List<String> columnNames, RecordBatch batch, RecordBatch totals) {
+        for (int col = 0; col < batch.columnCount(); col++) {
+            model.addValuesToColumn(columnNames.get(col), batch.values[col], batch.rows);
+        }
+        
+        for (String[] record : batch.records) {
+            model.addRawRecord(record);
+        }
+        model.addRawRecords(batch.table);
+        
+        totals.totalRecords += batch.totalRecords;
+        totals.validRecords += batch.validRecords;
+        totals.skippedRecords += batch.skippedRecords;
+        
+        batch.clear();
+    }
+    
     private char detectDelimiter(String line) {
         int commaCount = countOccurrences(line, ',');
         int semicolonCount = countOccurrences(line, ';');
@@ -146,63 +465,6 @@ public class CSVLoader {
         return count;
     }
     
-    private String[] parseLine(String line) {
-        List<String> tokens = new ArrayList<>();
-        StringBuilder currentToken = new StringBuilder();
-        boolean inQuotes = false;
-        
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            
-            if (c == '"') {
-                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') {
-                    currentToken.append('"');
-                    i++;
-                } else {
-                    inQuotes = !inQuotes;
-                }
-            } else if (c == delimiter && !inQuotes) {
-                tokens.add(currentToken.toString());
-                currentToken = new StringBuilder();
-            } else {
-                currentToken.append(c);
-            }
-        }
-        
-        tokens.add(currentToken.toString());
-        
-        return tokens.toArray(new String[0]);
-    }
-    
-    private Double parseNumericValue(String value) {
-        if (value == null || value.isEmpty()) {
-            return null;
-        }
-        
-        String cleanValue = value.trim();
-        
-        cleanValue = cleanValue.replaceAll("[$€£¥%]", "");
-        cleanValue = cleanValue.replaceAll("[,\\s](?=\\d{3})", "");
-        cleanValue = cleanValue.replace("(", "-").replace(")", "");
-        
-        cleanValue = cleanValue.trim();
-        
-        if (cleanValue.isEmpty() || 
-            cleanValue.equalsIgnoreCase("na") || 
-            cleanValue.equalsIgnoreCase("n/a") ||
-            cleanValue.equalsIgnoreCase("null") ||
-            cleanValue.equals("-") ||
-            cleanValue.equals(".")) {
-            return null;
-        }
-        
-        try {
-            return Double.parseDouble(cleanValue);
-        } catch (NumberFormatException ex) {
-            return null;
-        }
-    }
-    
     public void setDelimiter(char delimiter) {
         this.delimiter = delimiter;
     }
@@ -219,6 +481,42 @@ public class CSVLoader {
         return hasHeader;
     }
     
+    public void setNumberLocale(Locale numberLocale) {
+        this.numberLocale = numberLocale;
+    }
+    
+    public Locale getNumberLocale() {
+        return numberLocale;
+    }
+    
+    public void setColumnStorage(ColumnStorage columnStorage) {
+        this.columnStorage = columnStorage != null ? columnStorage : ColumnStorage.HEAP;
+    }
+    
+    public ColumnStorage getColumnStorage() {
+        return columnStorage;
+    }
+    
+    public void setRecordRetention(RecordRetention recordRetention) {
+        this.recordRetention = recordRetention != null ? recordRetention : RecordRetention.NONE;
+    }
+    
+    public RecordRetention getRecordRetention() {
+        return recordRetention;
+    }
+    
+    private NumberParser createNumberParser() {
+        return numberLocale != null ? NumberParser.forLocale(numberLocale) : new NumberParser();
+    }
+    
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+    
+    public int getParallelism() {
+        return parallelism;
+    }
+    
     public String getLastError() {
         return lastError;
     }
@@ -230,4 +528,60 @@ public class CSVLoader {
     public void clearError() {
         lastError = null;
     }
+    
+    /*
+     * Row-aligned column buffers: every record takes one slot in every column
+     * and a cell that does not parse stays NaN, which the column stores as
+     * missing.
+     */
+    private static final class SegmentScan {
+        
+        private final int[] endState = new int[STATES];
+        private final long[] firstBoundary = new long[STATES];
+        private final boolean[] quotedThroughout = new boolean[STATES];
+    }
+    
+    private static final class RecordBatch {
+        
+        private final double[][] values;
+        private final RecordRetention retention;
+        private final List<String[]> records;
+        private final RecordTable table;
+        private final NumberParser parser;
+        private int rows;
+        private int totalRecords;
+        private int validRecords;
+        private int skippedRecords;
+        
+        RecordBatch(int columnCount, NumberParser parser, RecordRetention retention) {
+            this.values = new double[columnCount][16];
+            this.retention = retention;
+            this.records = new ArrayList<>();
+            this.table = new RecordTable();
+            this.parser = parser;
+        }
+        
+        int columnCount() {
+            return values.length;
+        }
+        
+        int addRow() {
+            for (int col = 0; col < values.length; col++) {
+                if (rows == values[col].length) {
+                    values[col] = Arrays.copyOf(values[col], rows * 2);
+                }
+                values[col][rows] = Double.NaN;
+            }
+            return rows++;
+        }
+        
+        void clear() {
+            rows = 0;
+            records.clear();
+            table.clear();
+            totalRecords = 0;
+            validRecords = 0;
+            skippedRecords = 0;
+        }
+    }
 }
@@ -0,0 +1,362 @@
+package analyzer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits UTF-8 CSV input into records and fields without allocating per
+ * record. Field boundaries are reported as trimmed offsets into a reusable
+ * byte buffer; a field only becomes a String when fieldText is called.
+ *
+ * Records end at \n, \r\n or \r outside quotes, and records that contain
+ * nothing but whitespace are skipped. Each field is trimmed on its own, so
+ * an empty first or last cell of a tab-delimited record keeps its column.
+ *
+ * A quote only opens a quoted field when it is the first non-blank byte of
+ * the field, and only closes it when the next non-blank byte is a
+ * delimiter, a line break or the end of the input; "" inside a quoted field
+ * stands for one quote, and any other quote is taken literally. A quoted
+ * field may span lines, but one that is still open after MAX_QUOTED_RECORD
+ * bytes, or at the end of the input, is taken to be an unmatched quote and
+ * ends with its line instead, so a stray quote cannot swallow the rest of
+ * the file.
+ *
+ * @author Lukasz Golinski
+ */
+public class CSVTokenizer {
+    
+    public static final int MAX_QUOTED_RECORD = 1 << 20;
+    
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    private static final int MORE_INPUT = -1;
+    private static final int UNMATCHED_QUOTE = -2;
+    
+    private final ReadableByteChannel channel;
+    private final ByteBuffer source;
+    private byte delimiter;
+    
+    private byte[] buffer;
+    private ByteBuffer window;
+    private int position;
+    private int limit;
+    private long discarded;
+    private boolean eof;
+    
+    private int fieldCount;
+    private int[] starts;
+    private int[] ends;
+    private boolean[] escaped;
+    
+    public CSVTokenizer(ReadableByteChannel channel, char delimiter) {
+        this(channel, null, delimiter);
+    }
+    
+    public CSVTokenizer(ByteBuffer source, char delimiter) {
+        this(null, source, delimiter);
+    }
+    
+    private CSVTokenizer(ReadableByteChannel channel, ByteBuffer source, char delimiter) {
+        this.channel = channel;
+        this.source = source;
+        this.delimiter = (byte) delimiter;
+        this.buffer = new byte[DEFAULT_BUFFER_SIZE];
+        this.window = ByteBuffer.wrap(buffer);
+        this.starts = new int[16];
+        this.ends = new int[16];
+        this.escaped = new boolean[16];
+    }
+    
+    public void setDelimiter(char delimiter) {
+        this.delimiter = (byte) delimiter;
+    }
+    
+    /*
+     * Returns the first physical line of the remaining input without consuming
+     * it, or null at the end of input. Used for delimiter detection before any
+     * record is tokenized.
+     */
+    public String peekLine() throws IOException {
+        int end = position;
+        
+        while (true) {
+            while (end < limit && buffer[end] != '\n' && buffer[end] != '\r') {
+                end++;
+            }
+            if (end < limit || eof) {
+                break;
+            }
+            end -= position;
+            fill();
+            end += position;
+        }
+        
+        if (end == position && eof && limit == position) {
+            return null;
+        }
+        
+        return new String(buffer, position, end - position, StandardCharsets.UTF_8);
+    }
+    
+    public boolean nextRecord() throws IOException {
+        boolean multiline = true;
+        
+        while (true) {
+            int next = scanRecord(multiline);
+            
+            if (next == UNMATCHED_QUOTE) {
+                multiline = false;
+                continue;
+            }
+            
+            if (next == MORE_INPUT) {
+                if (eof) {
+                    return false;
+                }
+                fill();
+                continue;
+            }
+            
+            position = next;
+            multiline = true;
+            
+            if (fieldCount > 0) {
+                return true;
+            }
+        }
+    }
+    
+    /*
+     * Tokenizes one record starting at position. Returns the offset just past
+     * the record terminator, MORE_INPUT when the buffer ends before the
+     * record does and more input is available, or UNMATCHED_QUOTE when a
+     * quoted field has to be read again with line breaks ending it. A blank
+     * record leaves fieldCount at 0.
+     */
+    private int scanRecord(boolean multiline) {
+        fieldCount = 0;
+        
+        if (position >= limit) {
+            return MORE_INPUT;
+        }
+        
+        boolean blank = true;
+        int i = position;
+        
+        while (true) {
+            int fieldStart = i;
+            while (i < limit && isBlank(buffer[i])) {
+                i++;
+            }
+            
+            if (i < limit && buffer[i] == '"') {
+                blank = false;
+                int contentStart = i + 1;
+                boolean escapedQuote = false;
+                int j = contentStart;
+                
+                while (true) {
+                    if (j >= limit) {
+                        if (multiline && (eof || limit - position >= MAX_QUOTED_RECORD)) {
+                            return UNMATCHED_QUOTE;
+                        }
+                        if (!eof) {
+                            return MORE_INPUT;
+                        }
+                        break;
+                    }
+                    
+                    byte b = buffer[j];
+                    
+                    if (b == '"') {
+                        if (j + 1 == limit && !eof) {
+                            return MORE_INPUT;
+                        }
+                        if (j + 1 < limit && buffer[j + 1] == '"') {
+                            escapedQuote = true;
+                            j += 2;
+                            continue;
+                        }
+                        
+                        int k = j + 1;
+                        while (k < limit && isBlank(buffer[k])) {
+                            k++;
+                        }
+                        if (k == limit && !eof) {
+                            return MORE_INPUT;
+                        }
+                        if (k == limit || buffer[k] == delimiter || buffer[k] == '\n' || buffer[k] == '\r') {
+                            addField(contentStart, j, escapedQuote);
+                            i = k;
+                            break;
+                        }
+                        
+                        escapedQuote = true;
+                    } else if (!multiline && (b == '\n' || b == '\r')) {
+                        break;
+                    }
+                    j++;
+                }
+                
+                if (j >= limit || buffer[j] == '\n' || buffer[j] == '\r') {
+                    /* An unmatched quote: the field runs to the end of its line */
+                    addField(contentStart, j, escapedQuote);
+                    i = j;
+                }
+            } else {
+                while (i < limit) {
+                    byte b = buffer[i];
+                    if (b == delimiter || b == '\n' || b == '\r') {
+                        break;
+                    }
+                    if ((b & 0xFF) > ' ') {
+                        blank = false;
+                    }
+                    i++;
+                }
+                
+                if (i == limit && !eof) {
+                    return MORE_INPUT;
+                }
+                addField(fieldStart, i, false);
+            }
+            
+            if (i == limit) {
+                return finishRecord(blank, limit);
+            }
+            
+            byte b = buffer[i];
+            
+            if (b == delimiter) {
+                blank = false;
+                i++;
+                continue;
+            }
+            
+            if (b == '\r' && i + 1 == limit && !eof) {
+                return MORE_INPUT;
+            }
+            int next = (b == '\r' && i + 1 < limit && buffer[i + 1] == '\n') ? i + 2 : i + 1;
+            return finishRecord(blank, next);
+        }
+    }
+    
+    private boolean isBlank(byte b) {
+        return (b & 0xFF) <= ' ' && b != delimiter && b != '\n' && b != '\r';
+    }
+    
+    private int finishRecord(boolean blank, int next) {
+        if (blank) {
+            fieldCount = 0;
+        }
+        return next;
+    }
+    
+    private void addField(int start, int end, boolean escapedQuote) {
+        if (fieldCount == starts.length) {
+            int capacity = fieldCount * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            escaped = Arrays.copyOf(escaped, capacity);
+        }
+        
+        while (start < end && (buffer[start] & 0xFF) <= ' ') start++;
+        while (end > start && (buffer[end - 1] & 0xFF) <= ' ') end--;
+        
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        escaped[fieldCount] = escapedQuote;
+        fieldCount++;
+    }
+    
+    private void fill() throws IOException {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            discarded += position;
+            limit -= position;
+            position = 0;
+        } else if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            window = ByteBuffer.wrap(buffer);
+        }
+        
+        if (channel != null) {
+            window.limit(buffer.length).position(limit);
+            int read = channel.read(window);
+            if (read < 0) {
+                eof = true;
+            } else {
+                limit += read;
+            }
+        } else {
+            int read = Math.min(source.remaining(), buffer.length - limit);
+            source.get(buffer, limit, read);
+            limit += read;
+            eof = !source.hasRemaining();
+        }
+    }
+    
+    public int fieldCount() {
+        return fieldCount;
+    }
+    
+    public byte[] buffer() {
+        return buffer;
+    }
+    
+    public int fieldStart(int field) {
+        return starts[field];
+    }
+    
+    public int fieldEnd(int field) {
+        return ends[field];
+    }
+    
+    public boolean parseNumber(int field, NumberParser parser) {
+        if (escaped[field]) {
+            return parser.parse(fieldText(field));
+        }
+        return parser.parse(buffer, starts[field], ends[field]);
+    }
+    
+    public String fieldText(int field) {
+        int start = starts[field];
+        int end = ends[field];
+        
+        if (!escaped[field]) {
+            return new String(buffer, start, end - start, StandardCharsets.UTF_8);
+        }
+        
+        /* The content of a quoted field; "" stands for one quote */
+        byte[] text = new byte[end - start];
+        int length = 0;
+        
+        for (int i = start; i < end; i++) {
+            byte b = buffer[i];
+            text[length++] = b;
+            if (b == '"' && i + 1 < end && buffer[i + 1] == '"') {
+                i++;
+            }
+        }
+        
+        return new String(text, 0, length, StandardCharsets.UTF_8).trim();
+    }
+    
+    public String[] fieldTexts() {
+        String[] texts = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            texts[i] = fieldText(i);
+        }
+        return texts;
+    }
+    
+    /*
+     * Absolute offset, from the start of the input, of the first byte that has
+     * not yet been consumed as part of a record.
+     */
+    public long offset() {
+        return discarded + position;
+    }
+}
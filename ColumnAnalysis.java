@@ -0,0 +1,86 @@
+package analyzer;
+
+import java.util.*;
+
+/**
+ * The result of a full analysis of one column, detached from the engine that
+ * produced it, so it can be cached and shown again without touching the
+ * column's values.
+ *
+ * @author Lukasz Golinski
+ */
+public class ColumnAnalysis {
+    
+    private final String columnName;
+    private final Map<String, Double> results;
+    private final Set<String> approximate;
+    private final boolean approximateQuantiles;
+    private final String skewnessInterpretation;
+    private final String kurtosisInterpretation;
+    
+    private ColumnAnalysis(String columnName, Map<String, Double> results, Set<String> approximate,
+                           boolean approximateQuantiles, String skewnessInterpretation,
+                           String kurtosisInterpretation) {
+        this.columnName = columnName;
+        this.results = Collections.unmodifiableMap(results);
+        this.approximate = approximate;
+        this.approximateQuantiles = approximateQuantiles;
+        this.skewnessInterpretation = skewnessInterpretation;
+        this.kurtosisInterpretation = kurtosisInterpretation;
+    }
+    
+    public static ColumnAnalysis of(String columnName, StatisticsEngine engine) {
+        return of(columnName, engine, engine.getFullAnalysis());
+    }
+    
+    /*
+     * Wraps results the caller has already taken from the engine, such as
+     * the tiers it displayed while they were computed.
+     */
+    public static ColumnAnalysis of(String columnName, StatisticsEngine engine, Map<String, Double> results) {
+        Set<String> approximate = new HashSet<>();
+        for (String statistic : results.keySet()) {
+            if (engine.isApproximate(statistic)) {
+                approximate.add(statistic);
+            }
+        }
+        
+        return new ColumnAnalysis(columnName, results, approximate,
+                                  engine.usesApproximateQuantiles(),
+                                  engine.getSkewnessInterpretation(),
+                                  engine.getKurtosisInterpretation());
+    }
+    
+    public String getColumnName() {
+        return columnName;
+    }
+    
+    public Map<String, Double> getResults() {
+        return results;
+    }
+    
+    public double get(String statistic) {
+        Double value = results.get(statistic);
+        return value != null ? value : Double.NaN;
+    }
+    
+    public int getCount() {
+        return (int) get("Count");
+    }
+    
+    public boolean isApproximate(String statistic) {
+        return approximate.contains(statistic);
+    }
+    
+    public boolean usesApproximateQuantiles() {
+        return approximateQuantiles;
+    }
+    
+    public String getSkewnessInterpretation() {
+        return skewnessInterpretation;
+    }
+    
+    public String getKurtosisInterpretation() {
+        return kurtosisInterpretation;
+    }
+}
@@ -0,0 +1,30 @@
+package analyzer;
+
+/**
+ * Where DataModel keeps numeric column values.
+ *
+ * HEAP uses ordinary double arrays. DIRECT keeps values in direct buffers
+ * outside the Java heap, which keeps them away from the garbage collector
+ * but still counts against -XX:MaxDirectMemorySize (by default the same as
+ * -Xmx). MAPPED writes values to a temporary file mapped into memory, so
+ * the operating system pages them in and out and a column can be larger
+ * than both limits.
+ *
+ * @author Lukasz Golinski
+ */
+public enum ColumnStorage {
+    HEAP,
+    DIRECT,
+    MAPPED;
+    
+    public NumericColumn createColumn() {
+        switch (this) {
+            case DIRECT:
+                return new OffHeapDoubleColumn(false);
+            case MAPPED:
+                return new OffHeapDoubleColumn(true);
+            default:
+                return new DoubleColumn();
+        }
+    }
+}
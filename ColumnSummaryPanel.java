@@ -0,0 +1,193 @@
+package analyzer;
+
+import javax.swing.*;
+import javax.swing.table.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.text.DecimalFormat;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Shows the key statistics of every column side by side. Rows are filled in
+ * as the background analysis finishes each column; double-clicking a row
+ * opens that column in the Analysis tab.
+ *
+ * @author Lukasz Golinski
+ */
+public class ColumnSummaryPanel extends JPanel {
+    
+    private static final String[] STATISTICS = {
+        "Count", "Mean", "Std Dev (Sample)", "Minimum", "Quartile 1 (25%)", "Median",
+        "Quartile 3 (75%)", "Maximum", "Skewness", "Kurtosis", "Outliers (IQR method)"
+    };
+    
+    private JTable summaryTable;
+    private DefaultTableModel tableModel;
+    private JLabel summaryLabel;
+    private DecimalFormat formatter;
+    private DecimalFormat scientificFormatter;
+    private Map<String, Integer> rows;
+    private int analyzed;
+    private Consumer<String> columnListener;
+    
+    public ColumnSummaryPanel() {
+        formatter = new DecimalFormat("#,##0.####");
+        scientificFormatter = new DecimalFormat("0.####E0");
+        rows = new HashMap<>();
+        
+        setLayout(new BorderLayout(8, 8));
+        setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        setBackground(new Color(248, 249, 250));
+        
+        initializeComponents();
+    }
+    
+    private void initializeComponents() {
+        JLabel titleLabel = new JLabel("All Columns");
+        titleLabel.setFont(new Font("SansSerif", Font.BOLD, 16));
+        titleLabel.setForeground(new Color(44, 62, 80));
+        
+        add(titleLabel, BorderLayout.NORTH);
+        
+        String[] columns = {"Column", "Count", "Mean", "Std Dev", "Minimum", "Q1", "Median",
+                            "Q3", "Maximum", "Skewness", "Kurtosis", "Outliers (IQR)"};
+        tableModel = new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+            
+            @Override
+            public Class<?> getColumnClass(int column) {
+                return column == 0 ? String.class : Double.class;
+            }
+        };
+        
+        summaryTable = new JTable(tableModel);
+        summaryTable.setFont(new Font("SansSerif", Font.PLAIN, 12));
+        summaryTable.setRowHeight(24);
+        summaryTable.setShowGrid(true);
+        summaryTable.setGridColor(new Color(230, 230, 230));
+        summaryTable.setAutoCreateRowSorter(true);
+        summaryTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        
+        JTableHeader header = summaryTable.getTableHeader();
+        header.setFont(new Font("SansSerif", Font.BOLD, 12));
+        header.setBackground(new Color(52, 73, 94));
+        header.setForeground(Color.WHITE);
+        
+        summaryTable.setDefaultRenderer(Double.class, new ValueRenderer());
+        summaryTable.getColumnModel().getColumn(0).setPreferredWidth(150);
+        
+        summaryTable.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = summaryTable.getSelectedRow();
+                if (e.getClickCount() == 2 && row >= 0 && columnListener != null) {
+                    columnListener.accept((String) tableModel.getValueAt(
+                        summaryTable.convertRowIndexToModel(row), 0));
+                }
+            }
+        });
+        
+        JScrollPane scrollPane = new JScrollPane(summaryTable);
+        scrollPane.setBorder(BorderFactory.createLineBorder(new Color(200, 200, 200)));
+        scrollPane.getViewport().setBackground(Color.WHITE);
+        
+        add(scrollPane, BorderLayout.CENTER);
+        
+        summaryLabel = new JLabel("Load a CSV file to see every column at once");
+        summaryLabel.setFont(new Font("SansSerif", Font.ITALIC, 11));
+        summaryLabel.setForeground(Color.GRAY);
+        summaryLabel.setBorder(BorderFactory.createEmptyBorder(5, 0, 0, 0));
+        
+        add(summaryLabel, BorderLayout.SOUTH);
+    }
+    
+    public void setColumnListener(Consumer<String> columnListener) {
+        this.columnListener = columnListener;
+    }
+    
+    /*
+     * Starts a row for every column of the model, with its statistics pending
+     * unless the column has no numeric values at all.
+     */
+    public void setColumns(DataModel model) {
+        tableModel.setRowCount(0);
+        rows.clear();
+        analyzed = 0;
+        
+        for (String columnName : model.getColumnNames()) {
+            Object[] row = new Object[STATISTICS.length + 1];
+            row[0] = columnName;
+            if (model.getColumn(columnName).validCount() == 0) {
+                Arrays.fill(row, 1, row.length, Double.NaN);
+                row[1] = 0.0;
+                analyzed++;
+            }
+            rows.put(columnName, tableModel.getRowCount());
+            tableModel.addRow(row);
+        }
+        
+        updateSummaryLabel();
+    }
+    
+    public void updateColumn(ColumnAnalysis analysis) {
+        Integer row = rows.get(analysis.getColumnName());
+        if (row == null) return;
+        
+        if (tableModel.getValueAt(row, 1) == null) {
+            analyzed++;
+        }
+        for (int i = 0; i < STATISTICS.length; i++) {
+            tableModel.setValueAt(analysis.get(STATISTICS[i]), row, i + 1);
+        }
+        
+        updateSummaryLabel();
+    }
+    
+    private void updateSummaryLabel() {
+        if (rows.isEmpty()) {
+            summaryLabel.setText("Load a CSV file to see every column at once");
+        } else if (analyzed < rows.size()) {
+            summaryLabel.setText("Analyzed " + analyzed + " of " + rows.size() + " columns...");
+        } else {
+            summaryLabel.setText(rows.size() + " columns analyzed | double-click a row to open it");
+        }
+    }
+    
+    public void clearData() {
+        tableModel.setRowCount(0);
+        rows.clear();
+        analyzed = 0;
+        updateSummaryLabel();
+    }
+    
+    private class ValueRenderer extends DefaultTableCellRenderer {
+        
+        public ValueRenderer() {
+            setHorizontalAlignment(SwingConstants.RIGHT);
+        }
+        
+        @Override
+        protected void setValue(Object value) {
+            if (value == null) {
+                setText("...");
+                return;
+            }
+            
+            double number = (Double) value;
+            double absValue = Math.abs(number);
+            
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                setText("N/A");
+            } else if (absValue != 0 && (absValue >= 1000000 || absValue < 0.0001)) {
+                setText(scientificFormatter.format(number));
+            } else {
+                setText(formatter.format(number));
+            }
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package analyzer;
+
+import java.util.Arrays;
+
+/**
+ * Read-only access to one numeric column without boxing. A column has one
+ * slot per record; slots whose cell did not parse are missing, which is
+ * recorded in a validity bitmap exposed one 64-row word at a time.
+ * Implementations hand out their own storage, so callers must not assume a
+ * snapshot: copy with toArray when the values have to outlive a reload.
+ *
+ * @author Lukasz Golinski
+ */
+public interface ColumnView {
+    
+    ColumnView EMPTY = wrap(new double[0]);
+    
+    int size();
+    
+    double get(int row);
+    
+    boolean isValid(int row);
+    
+    int validCount();
+    
+    /*
+     * Bit i of word w is set when row w * 64 + i holds a value. Words past the
+     * last row are zero.
+     */
+    long validityWord(int word);
+    
+    default int wordCount() {
+        return (size() + 63) >>> 6;
+    }
+    
+    default boolean hasMissing() {
+        return validCount() < size();
+    }
+    
+    /*
+     * Whether the values live outside the Java heap, where copying them all
+     * into an array could need far more heap than the column takes.
+     */
+    default boolean isOffHeap() {
+        return false;
+    }
+    
+    default void copyTo(int from, double[] dest, int destPos, int length) {
+        for (int i = 0; i < length; i++) {
+            dest[destPos + i] = get(from + i);
+        }
+    }
+    
+    default double[] toArray() {
+        double[] values = new double[size()];
+        copyTo(0, values, 0, values.length);
+        return values;
+    }
+    
+    /*
+     * Copies the valid values, in row order, into a new array.
+     */
+    default double[] toValidArray() {
+        if (!hasMissing()) {
+            return toArray();
+        }
+        
+        double[] values = new double[validCount()];
+        copyValid(0, wordCount(), values);
+        return values;
+    }
+    
+    /*
+     * Copies the valid values of the rows covered by a range of bitmap words
+     * into dest, closing up the gaps, and returns how many were copied. Runs
+     * of fully valid words are copied in bulk.
+     */
+    default int copyValid(int fromWord, int toWord, double[] dest) {
+        int count = 0;
+        int w = fromWord;
+        
+        while (w < toWord) {
+            long bits = validityWord(w);
+            
+            if (bits == -1L) {
+                int end = w + 1;
+                while (end < toWord && validityWord(end) == -1L) {
+                    end++;
+                }
+                copyTo(w << 6, dest, count, (end - w) << 6);
+                count += (end - w) << 6;
+                w = end;
+                continue;
+            }
+            
+            while (bits != 0) {
+                dest[count++] = get((w << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+            w++;
+        }
+        
+        return count;
+    }
+    
+    /*
+     * Views an array as a column without copying it; every slot is valid and
+     * later writes to the array show through the view.
+     */
+    static ColumnView wrap(double[] values) {
+        return new ColumnView() {
+            @Override
+            public int size() {
+                return values.length;
+            }
+            
+            @Override
+            public double get(int row) {
+                return values[row];
+            }
+            
+            @Override
+            public boolean isValid(int row) {
+                return row >= 0 && row < values.length;
+            }
+            
+            @Override
+            public int validCount() {
+                return values.length;
+            }
+            
+            @Override
+            public long validityWord(int word) {
+                int remaining = values.length - (word << 6);
+                if (remaining <= 0) return 0L;
+                return remaining >= 64 ? -1L : (1L << remaining) - 1;
+            }
+            
+            @Override
+            public void copyTo(int from, double[] dest, int destPos, int length) {
+                System.arraycopy(values, from, dest, destPos, length);
+            }
+        };
+    }
+    
+    /*
+     * Views the valid values of a column in row order with the missing rows
+     * closed up, without copying them. What is kept is the number of valid
+     * values before each bitmap word, one int per 64 rows, and the word
+     * holding every 64th valid value. get narrows its word down between two
+     * of the latter and searches the counts in between, while copyTo walks
+     * the bitmap.
+     */
+    static ColumnView closeGaps(ColumnView column) {
+        if (!column.hasMissing()) {
+            return column;
+        }
+        
+        int words = column.wordCount();
+        int[] before = new int[words + 1];
+        for (int w = 0; w < words; w++) {
+            before[w + 1] = before[w] + Long.bitCount(column.validityWord(w));
+        }
+        int size = before[words];
+        
+        int[] sampled = new int[(size >>> 6) + 2];
+        int next = 0;
+        for (int w = 0; w < words; w++) {
+            while ((next << 6) < before[w + 1]) {
+                sampled[next++] = w;
+            }
+        }
+        Arrays.fill(sampled, next, sampled.length, words - 1);
+        
+        return new ColumnView() {
+            @Override
+            public int size() {
+                return size;
+            }
+            
+            @Override
+            public double get(int row) {
+                int w = wordOf(row);
+                return column.get((w << 6) + select(column.validityWord(w), row - before[w]));
+            }
+            
+            @Override
+            public boolean isValid(int row) {
+                return row >= 0 && row < size;
+            }
+            
+            @Override
+            public int validCount() {
+                return size;
+            }
+            
+            @Override
+            public long validityWord(int word) {
+                int remaining = size - (word << 6);
+                if (remaining <= 0) return 0L;
+                return remaining >= 64 ? -1L : (1L << remaining) - 1;
+            }
+            
+            @Override
+            public boolean isOffHeap() {
+                return column.isOffHeap();
+            }
+            
+            @Override
+            public void copyTo(int from, double[] dest, int destPos, int length) {
+                if (length <= 0) {
+                    return;
+                }
+                
+                int w = wordOf(from);
+                long bits = skip(column.validityWord(w), from - before[w]);
+                int end = destPos + length;
+                
+                for (int d = destPos; d < end; ) {
+                    while (bits == 0) {
+                        bits = column.validityWord(++w);
+                    }
+                    if (bits == -1L && end - d >= 64) {
+                        column.copyTo(w << 6, dest, d, 64);
+                        d += 64;
+                        bits = 0;
+                        continue;
+                    }
+                    dest[d++] = column.get((w << 6) + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+            
+            /* The last word with no more than row valid values before it */
+            private int wordOf(int row) {
+                int low = sampled[row >>> 6];
+                int high = sampled[(row >>> 6) + 1];
+                while (low < high) {
+                    int middle = (low + high + 1) >>> 1;
+                    if (before[middle] <= row) {
+                        low = middle;
+                    } else {
+                        high = middle - 1;
+                    }
+                }
+                return low;
+            }
+            
+            private long skip(long bits, int count) {
+                for (int i = 0; i < count; i++) {
+                    bits &= bits - 1;
+                }
+                return bits;
+            }
+            
+            /* The position of the set bit with count set bits below it */
+            private int select(long bits, int count) {
+                int shift = 0;
+                for (int width = 32; width >= 8; width >>>= 1) {
+                    int low = Long.bitCount(bits & ((1L << width) - 1));
+                    if (count >= low) {
+                        count -= low;
+                        bits >>>= width;
+                        shift += width;
+                    }
+                }
+                return shift + Long.numberOfTrailingZeros(skip(bits, count));
+            }
+        };
+    }
+}
@@ -0,0 +1,626 @@
+package analyzer;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Pearson and Spearman correlation and covariance matrices over any number
+ * of columns.
+ *
+ * Every cross product is gathered in one pass over the rows. The rows are
+ * taken 128 at a time: each column's slice is copied into a small dense
+ * tile, shifted by a value near the column mean, and the tile's columns are
+ * multiplied two by two so that four products share each load. Runs of
+ * tiles are spread over the common fork/join pool and their sums added up.
+ *
+ * When no value is missing the products, the column sums and the row count
+ * are all that is needed. Otherwise each pair is taken over the rows where
+ * both columns have a value, and the sum and sum of squares of each column
+ * over the other column's rows are gathered as well; the result is exact
+ * pairwise, for about three times the work.
+ *
+ * Spearman ranks each column over its own valid values, giving ties their
+ * average rank, and correlates the ranks.
+ *
+ * @author Lukasz Golinski
+ */
+public class CorrelationEngine {
+    
+    public enum Method {
+        PEARSON("Pearson"),
+        SPEARMAN("Spearman");
+        
+        private final String label;
+        
+        Method(String label) {
+            this.label = label;
+        }
+        
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+    
+    private static final int TILE_WORDS = 2;
+    private static final int TILE_ROWS = TILE_WORDS << 6;
+    private static final int MIN_LEAF_WORDS = 1 << 8;
+    private static final long PARALLEL_THRESHOLD = 1L << 20;
+    private static final int RADIX_BITS = 11;
+    private static final int RADIX = 1 << RADIX_BITS;
+    
+    private final String[] columnNames;
+    private final ColumnView[] columns;
+    private final double[] shifts;
+    private boolean parallel;
+    private volatile boolean cancelled;
+    
+    /*
+     * The shifts only keep the sums small; any value near each column's mean
+     * will do, and a non-finite one is replaced by zero.
+     */
+    public CorrelationEngine(String[] columnNames, ColumnView[] columns, double[] shifts) {
+        this.columnNames = columnNames.clone();
+        this.columns = columns.clone();
+        this.shifts = new double[shifts.length];
+        this.parallel = true;
+        
+        for (int i = 0; i < shifts.length; i++) {
+            this.shifts[i] = Double.isFinite(shifts[i]) ? shifts[i] : 0.0;
+        }
+    }
+    
+    /*
+     * Every column of the model that has at least one value, shifted by the
+     * mean the loader has already accumulated.
+     */
+    public static CorrelationEngine of(DataModel model) {
+        List<String> names = new ArrayList<>();
+        for (String name : model.getColumnNames()) {
+            if (model.getColumn(name).validCount() > 0) {
+                names.add(name);
+            }
+        }
+        
+        ColumnView[] columns = new ColumnView[names.size()];
+        double[] shifts = new double[names.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = model.getColumn(names.get(i));
+            shifts[i] = model.getColumnStatistics(names.get(i)).getMean();
+        }
+        
+        return new CorrelationEngine(names.toArray(new String[0]), columns, shifts);
+    }
+    
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+    
+    public boolean isParallel() {
+        return parallel;
+    }
+    
+    /*
+     * Makes a compute running on another thread stop after its current tile
+     * or radix pass and return null.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+    
+    public boolean isCancelled() {
+        return cancelled;
+    }
+    
+    public int getColumnCount() {
+        return columns.length;
+    }
+    
+    public CorrelationMatrix pearson() {
+        return compute(Method.PEARSON);
+    }
+    
+    public CorrelationMatrix spearman() {
+        return compute(Method.SPEARMAN);
+    }
+    
+    public CorrelationMatrix compute(Method method) {
+        int k = columns.length;
+        ColumnView[] views = columns;
+        double[] centers = shifts;
+        
+        if (method == Method.SPEARMAN) {
+            views = new ColumnView[k];
+            centers = new double[k];
+            rankAll(views, centers);
+        }
+        
+        int rows = 0;
+        int words = 0;
+        boolean masked = false;
+        for (ColumnView view : views) {
+            rows = Math.max(rows, view.size());
+            words = Math.max(words, view.wordCount());
+            masked |= view.hasMissing();
+        }
+        for (ColumnView view : views) {
+            masked |= view.size() != rows;
+        }
+        
+        if (cancelled) {
+            return null;
+        }
+        
+        GramTask task = new GramTask(views, centers, rows, masked, 0, words, leafWords(words));
+        CrossProducts products = useParallel(rows) ? ForkJoinPool.commonPool().invoke(task) : task.sequential();
+        
+        if (cancelled) {
+            return null;
+        }
+        
+        return finish(method, products);
+    }
+    
+    private boolean useParallel(int rows) {
+        return parallel && (long) rows * columns.length >= PARALLEL_THRESHOLD
+            && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+    
+    /*
+     * A few leaves per worker, so the partial matrices stay few even when
+     * the column count makes each of them large.
+     */
+    private int leafWords(int words) {
+        int leaves = 4 * ForkJoinPool.getCommonPoolParallelism();
+        int leafWords = Math.max(MIN_LEAF_WORDS, (words + leaves - 1) / leaves);
+        return (leafWords + TILE_WORDS - 1) / TILE_WORDS * TILE_WORDS;
+    }
+    
+    /*
+     * Ranks the columns one task per column, shifting each by its mean rank.
+     */
+    private void rankAll(ColumnView[] views, double[] centers) {
+        if (useParallel(columns.length > 0 ? columns[0].size() : 0)) {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int c = 0; c < columns.length; c++) {
+                int column = c;
+                tasks.add(() -> {
+                    rankColumn(column, views, centers);
+                    return null;
+                });
+            }
+            ForkJoinPool.commonPool().invokeAll(tasks);
+        } else {
+            for (int c = 0; c < columns.length; c++) {
+                rankColumn(c, views, centers);
+            }
+        }
+        
+        for (int c = 0; c < views.length; c++) {
+            if (views[c] == null) {
+                views[c] = ColumnView.EMPTY;
+            }
+        }
+    }
+    
+    private void rankColumn(int column, ColumnView[] views, double[] centers) {
+        if (!cancelled) {
+            views[column] = ranks(columns[column]);
+            centers[column] = (columns[column].validCount() + 1) / 2.0;
+        }
+    }
+    
+    /*
+     * The rank of every valid value among the column's valid values, one
+     * based, with tied values sharing the mean of their ranks. Missing rows
+     * stay missing. The values are radix sorted together with their rows, so
+     * each rank is written once while walking runs of equal values. Returns
+     * null once the engine is cancelled.
+     */
+    ColumnView ranks(ColumnView column) {
+        int n = column.validCount();
+        long[] keys = new long[n];
+        int[] rows = new int[n];
+        
+        int count = 0;
+        int words = column.wordCount();
+        for (int w = 0; w < words && !cancelled; w++) {
+            long bits = column.validityWord(w);
+            while (bits != 0) {
+                int row = (w << 6) + Long.numberOfTrailingZeros(bits);
+                long raw = Double.doubleToRawLongBits(column.get(row) + 0.0);
+                keys[count] = raw ^ ((raw >> 63) | Long.MIN_VALUE);
+                rows[count++] = row;
+                bits &= bits - 1;
+            }
+        }
+        
+        radixSort(keys, rows, count);
+        if (cancelled) {
+            return null;
+        }
+        
+        double[] ranks = new double[column.size()];
+        int start = 0;
+        while (start < count) {
+            int end = start + 1;
+            while (end < count && keys[end] == keys[start]) {
+                end++;
+            }
+            double rank = (start + end + 1) / 2.0;
+            for (int i = start; i < end; i++) {
+                ranks[rows[i]] = rank;
+            }
+            start = end;
+        }
+        
+        return new ColumnView() {
+            @Override
+            public int size() {
+                return ranks.length;
+            }
+            
+            @Override
+            public double get(int row) {
+                return ranks[row];
+            }
+            
+            @Override
+            public boolean isValid(int row) {
+                return column.isValid(row);
+            }
+            
+            @Override
+            public int validCount() {
+                return column.validCount();
+            }
+            
+            @Override
+            public long validityWord(int word) {
+                return column.validityWord(word);
+            }
+            
+            @Override
+            public void copyTo(int from, double[] dest, int destPos, int length) {
+                System.arraycopy(ranks, from, dest, destPos, length);
+            }
+        };
+    }
+    
+    /*
+     * Sorts unsigned keys, carrying the rows along, eleven bits per pass
+     * from the lowest up. Passes in which every key has the same digit are
+     * skipped, and the sort stops early, unfinished, once the engine is
+     * cancelled.
+     */
+    private void radixSort(long[] keys, int[] rows, int n) {
+        long[] sourceKeys = keys;
+        int[] sourceRows = rows;
+        long[] targetKeys = new long[n];
+        int[] targetRows = new int[n];
+        int[] offsets = new int[RADIX];
+        
+        for (int shift = 0; shift < 64 && n > 0 && !cancelled; shift += RADIX_BITS) {
+            Arrays.fill(offsets, 0);
+            for (int i = 0; i < n; i++) {
+                offsets[(int) (sourceKeys[i] >>> shift) & (RADIX - 1)]++;
+            }
+            if (offsets[(int) (sourceKeys[0] >>> shift) & (RADIX - 1)] == n) {
+                continue;
+            }
+            
+            int position = 0;
+            for (int d = 0; d < RADIX; d++) {
+                int digitCount = offsets[d];
+                offsets[d] = position;
+                position += digitCount;
+            }
+            
+            for (int i = 0; i < n; i++) {
+                int target = offsets[(int) (sourceKeys[i] >>> shift) & (RADIX - 1)]++;
+                targetKeys[target] = sourceKeys[i];
+                targetRows[target] = sourceRows[i];
+            }
+            
+            long[] swapKeys = sourceKeys;
+            sourceKeys = targetKeys;
+            targetKeys = swapKeys;
+            int[] swapRows = sourceRows;
+            sourceRows = targetRows;
+            targetRows = swapRows;
+        }
+        
+        if (sourceKeys != keys) {
+            System.arraycopy(sourceKeys, 0, keys, 0, n);
+            System.arraycopy(sourceRows, 0, rows, 0, n);
+        }
+    }
+    
+    /*
+     * Turns the shifted sums of each pair into a covariance and correlation;
+     * the shift cancels out of both.
+     */
+    private CorrelationMatrix finish(Method method, CrossProducts products) {
+        int k = columns.length;
+        int stride = products.stride;
+        double[] covariances = new double[k * k];
+        double[] correlations = new double[k * k];
+        long[] counts = new long[k * k];
+        
+        for (int i = 0; i < k; i++) {
+            for (int j = i; j < k; j++) {
+                long n;
+                double sumX;
+                double sumY;
+                double squaresX;
+                double squaresY;
+                double crossXY = products.products[i * stride + j];
+                
+                if (products.masked) {
+                    n = products.counts[i * k + j];
+                    sumX = products.sums[i * k + j];
+                    sumY = products.sums[j * k + i];
+                    squaresX = products.squares[i * k + j];
+                    squaresY = products.squares[j * k + i];
+                } else {
+                    n = products.counts[0];
+                    sumX = products.sums[i];
+                    sumY = products.sums[j];
+                    squaresX = products.products[i * stride + i];
+                    squaresY = products.products[j * stride + j];
+                }
+                
+                double covariance = Double.NaN;
+                double correlation = Double.NaN;
+                
+                if (n > 1) {
+                    double cxy = crossXY - sumX * sumY / n;
+                    double cxx = squaresX - sumX * sumX / n;
+                    double cyy = squaresY - sumY * sumY / n;
+                    
+                    covariance = cxy / (n - 1);
+                    if (cxx > 0 && cyy > 0) {
+                        correlation = i == j ? 1.0 : Math.max(-1.0, Math.min(1.0, cxy / Math.sqrt(cxx * cyy)));
+                    }
+                }
+                
+                covariances[i * k + j] = covariance;
+                covariances[j * k + i] = covariance;
+                correlations[i * k + j] = correlation;
+                correlations[j * k + i] = correlation;
+                counts[i * k + j] = n;
+                counts[j * k + i] = n;
+            }
+        }
+        
+        return new CorrelationMatrix(method, columnNames.clone(), covariances, correlations, counts);
+    }
+    
+    /*
+     * Mergeable sums over a range of rows. Products are kept for an even
+     * number of columns, padding with a column of zeros, so the two-by-two
+     * kernel needs no edge case; pair (i, j) with i <= j is at i * stride + j.
+     * Masked sums are full k by k: sums[i * k + j] adds column i over the
+     * rows where column j has a value.
+     */
+    private static final class CrossProducts {
+        
+        final int stride;
+        final boolean masked;
+        final double[] products;
+        final double[] sums;
+        final double[] squares;
+        final long[] counts;
+        
+        CrossProducts(int k, boolean masked) {
+            this.stride = (k + 1) & ~1;
+            this.masked = masked;
+            this.products = new double[stride * stride];
+            this.sums = new double[masked ? k * k : k];
+            this.squares = masked ? new double[k * k] : null;
+            this.counts = new long[masked ? k * k : 1];
+        }
+        
+        void merge(CrossProducts other) {
+            add(products, other.products);
+            add(sums, other.sums);
+            if (masked) {
+                add(squares, other.squares);
+            }
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+        }
+        
+        private static void add(double[] target, double[] source) {
+            for (int i = 0; i < target.length; i++) {
+                target[i] += source[i];
+            }
+        }
+    }
+    
+    private final class GramTask extends RecursiveTask<CrossProducts> {
+        
+        private final ColumnView[] views;
+        private final double[] centers;
+        private final int rows;
+        private final boolean masked;
+        private final int fromWord;
+        private final int toWord;
+        private final int leafWords;
+        
+        GramTask(ColumnView[] views, double[] centers, int rows, boolean masked,
+                 int fromWord, int toWord, int leafWords) {
+            this.views = views;
+            this.centers = centers;
+            this.rows = rows;
+            this.masked = masked;
+            this.fromWord = fromWord;
+            this.toWord = toWord;
+            this.leafWords = leafWords;
+        }
+        
+        CrossProducts sequential() {
+            int k = views.length;
+            CrossProducts result = new CrossProducts(k, masked);
+            double[] tile = new double[result.stride * TILE_ROWS];
+            double[] marks = masked ? new double[k * TILE_ROWS] : null;
+            long[] validity = masked ? new long[k * TILE_WORDS] : null;
+            
+            for (int w = fromWord; w < toWord && !cancelled; w += TILE_WORDS) {
+                int tileWords = Math.min(toWord, w + TILE_WORDS) - w;
+                int from = w << 6;
+                int length = Math.min(rows, (w + tileWords) << 6) - from;
+                
+                if (masked) {
+                    gatherMasked(w, tileWords, length, tile, marks, validity);
+                    accumulateMasked(tileWords, length, tile, marks, validity, result);
+                } else {
+                    gatherDense(from, length, tile, result);
+                    accumulateDense(length, tile, result);
+                }
+            }
+            
+            return result;
+        }
+        
+        @Override
+        protected CrossProducts compute() {
+            if (toWord - fromWord <= leafWords) {
+                return sequential();
+            }
+            
+            int middle = fromWord + (toWord - fromWord) / TILE_WORDS / 2 * TILE_WORDS;
+            GramTask right = new GramTask(views, centers, rows, masked, middle, toWord, leafWords);
+            right.fork();
+            CrossProducts left = new GramTask(views, centers, rows, masked, fromWord, middle, leafWords).compute();
+            left.merge(right.join());
+            return left;
+        }
+        
+        private void gatherDense(int from, int length, double[] tile, CrossProducts result) {
+            for (int c = 0; c < views.length; c++) {
+                int offset = c * TILE_ROWS;
+                double center = centers[c];
+                double sum = 0.0;
+                
+                views[c].copyTo(from, tile, offset, length);
+                for (int r = offset; r < offset + length; r++) {
+                    double value = tile[r] - center;
+                    tile[r] = value;
+                    sum += value;
+                }
+                result.sums[c] += sum;
+            }
+            result.counts[0] += length;
+        }
+        
+        private void accumulateDense(int length, double[] tile, CrossProducts result) {
+            int stride = result.stride;
+            double[] products = result.products;
+            
+            for (int i = 0; i < stride; i += 2) {
+                int a0 = i * TILE_ROWS;
+                int a1 = a0 + TILE_ROWS;
+                
+                for (int j = i; j < stride; j += 2) {
+                    int b0 = j * TILE_ROWS;
+                    int b1 = b0 + TILE_ROWS;
+                    double s00 = 0.0;
+                    double s01 = 0.0;
+                    double s10 = 0.0;
+                    double s11 = 0.0;
+                    
+                    for (int r = 0; r < length; r++) {
+                        double x0 = tile[a0 + r];
+                        double x1 = tile[a1 + r];
+                        double y0 = tile[b0 + r];
+                        double y1 = tile[b1 + r];
+                        s00 += x0 * y0;
+                        s01 += x0 * y1;
+                        s10 += x1 * y0;
+                        s11 += x1 * y1;
+                    }
+                    
+                    products[i * stride + j] += s00;
+                    products[i * stride + j + 1] += s01;
+                    products[(i + 1) * stride + j] += s10;
+                    products[(i + 1) * stride + j + 1] += s11;
+                }
+            }
+        }
+        
+        private void gatherMasked(int word, int tileWords, int length, double[] tile,
+                                  double[] marks, long[] validity) {
+            for (int c = 0; c < views.length; c++) {
+                int offset = c * TILE_ROWS;
+                double center = centers[c];
+                
+                Arrays.fill(tile, offset, offset + length, 0.0);
+                Arrays.fill(marks, offset, offset + length, 0.0);
+                
+                for (int t = 0; t < tileWords; t++) {
+                    long bits = views[c].validityWord(word + t);
+                    validity[c * TILE_WORDS + t] = bits;
+                    
+                    while (bits != 0) {
+                        int row = (t << 6) + Long.numberOfTrailingZeros(bits);
+                        tile[offset + row] = views[c].get((word << 6) + row) - center;
+                        marks[offset + row] = 1.0;
+                        bits &= bits - 1;
+                    }
+                }
+            }
+        }
+        
+        private void accumulateMasked(int tileWords, int length, double[] tile, double[] marks,
+                                      long[] validity, CrossProducts result) {
+            int k = views.length;
+            int stride = result.stride;
+            
+            for (int i = 0; i < k; i++) {
+                int a = i * TILE_ROWS;
+                
+                for (int j = i; j < k; j++) {
+                    long n = 0;
+                    for (int t = 0; t < tileWords; t++) {
+                        n += Long.bitCount(validity[i * TILE_WORDS + t] & validity[j * TILE_WORDS + t]);
+                    }
+                    if (n == 0) {
+                        continue;
+                    }
+                    
+                    int b = j * TILE_ROWS;
+                    double sxy = 0.0;
+                    double sx = 0.0;
+                    double sy = 0.0;
+                    double sxx = 0.0;
+                    double syy = 0.0;
+                    
+                    for (int r = 0; r < length; r++) {
+                        double x = tile[a + r];
+                        double y = tile[b + r];
+                        double markX = marks[a + r];
+                        double markY = marks[b + r];
+                        sxy += x * y;
+                        sx += x * markY;
+                        sy += y * markX;
+                        sxx += x * x * markY;
+                        syy += y * y * markX;
+                    }
+                    
+                    result.products[i * stride + j] += sxy;
+                    result.sums[i * k + j] += sx;
+                    result.squares[i * k + j] += sxx;
+                    result.counts[i * k + j] += n;
+                    if (i != j) {
+                        result.sums[j * k + i] += sy;
+                        result.squares[j * k + i] += syy;
+                    }
+                }
+            }
+        }
+    }
+}
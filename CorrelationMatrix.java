@@ -0,0 +1,54 @@
+package analyzer;
+
+/**
+ * Pairwise covariances and correlation coefficients of a set of columns,
+ * with the number of rows each pair was computed from. Entries of pairs
+ * with fewer than two common rows, or where a column is constant over the
+ * common rows, are NaN.
+ *
+ * @author Lukasz Golinski
+ */
+public class CorrelationMatrix {
+    
+    private final CorrelationEngine.Method method;
+    private final String[] columnNames;
+    private final double[] covariances;
+    private final double[] correlations;
+    private final long[] counts;
+    
+    CorrelationMatrix(CorrelationEngine.Method method, String[] columnNames,
+                      double[] covariances, double[] correlations, long[] counts) {
+        this.method = method;
+        this.columnNames = columnNames;
+        this.covariances = covariances;
+        this.correlations = correlations;
+        this.counts = counts;
+    }
+    
+    public CorrelationEngine.Method getMethod() {
+        return method;
+    }
+    
+    public int size() {
+        return columnNames.length;
+    }
+    
+    public String getColumnName(int index) {
+        return columnNames[index];
+    }
+    
+    public double getCorrelation(int row, int column) {
+        return correlations[row * columnNames.length + column];
+    }
+    
+    /*
+     * For Spearman this is the covariance of the ranks.
+     */
+    public double getCovariance(int row, int column) {
+        return covariances[row * columnNames.length + column];
+    }
+    
+    public long getCount(int row, int column) {
+        return counts[row * columnNames.length + column];
+    }
+}
@@ -0,0 +1,358 @@
+package analyzer;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.text.DecimalFormat;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Computes the correlation matrix of every column and shows it as a
+ * heatmap, blue for negative and red for positive correlation. The cells
+ * are rendered once into an image with one pixel per cell and scaled when
+ * painted, so even large matrices repaint instantly; hovering a cell shows
+ * the pair's coefficient, covariance and common row count.
+ *
+ * @author Lukasz Golinski
+ */
+public class CorrelationPanel extends JPanel {
+    
+    private static final Color NEGATIVE_COLOR = new Color(41, 128, 185);
+    private static final Color POSITIVE_COLOR = new Color(231, 76, 60);
+    private static final Color MISSING_COLOR = new Color(220, 220, 220);
+    
+    private DataModel model;
+    private CorrelationEngine engine;
+    private CorrelationMatrix matrix;
+    private SwingWorker<CorrelationMatrix, Void> worker;
+    
+    private JComboBox<CorrelationEngine.Method> methodCombo;
+    private JButton calculateButton;
+    private HeatmapView heatmapView;
+    private JLabel summaryLabel;
+    private JLabel hoverLabel;
+    private DecimalFormat formatter;
+    private DecimalFormat correlationFormatter;
+    
+    public CorrelationPanel() {
+        formatter = new DecimalFormat("#,##0.######");
+        correlationFormatter = new DecimalFormat("0.0000");
+        
+        setLayout(new BorderLayout(8, 8));
+        setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        setBackground(new Color(248, 249, 250));
+        
+        initializeComponents();
+    }
+    
+    private void initializeComponents() {
+        JPanel topPanel = new JPanel(new BorderLayout(10, 10));
+        topPanel.setOpaque(false);
+        
+        JLabel titleLabel = new JLabel("Correlations");
+        titleLabel.setFont(new Font("SansSerif", Font.BOLD, 16));
+        titleLabel.setForeground(new Color(44, 62, 80));
+        
+        JPanel controlsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 15, 5));
+        controlsPanel.setOpaque(false);
+        
+        JLabel methodLabel = new JLabel("Method:");
+        methodLabel.setFont(new Font("SansSerif", Font.PLAIN, 12));
+        controlsPanel.add(methodLabel);
+        
+        methodCombo = new JComboBox<>(CorrelationEngine.Method.values());
+        methodCombo.setPreferredSize(new Dimension(110, 25));
+        controlsPanel.add(methodCombo);
+        
+        calculateButton = new JButton("Calculate");
+        calculateButton.setBackground(new Color(52, 152, 219));
+        calculateButton.setForeground(Color.WHITE);
+        calculateButton.setFocusPainted(false);
+        calculateButton.addActionListener(e -> calculate());
+        controlsPanel.add(calculateButton);
+        
+        topPanel.add(titleLabel, BorderLayout.NORTH);
+        topPanel.add(controlsPanel, BorderLayout.CENTER);
+        
+        add(topPanel, BorderLayout.NORTH);
+        
+        heatmapView = new HeatmapView();
+        add(heatmapView, BorderLayout.CENTER);
+        
+        JPanel bottomPanel = new JPanel(new BorderLayout(10, 0));
+        bottomPanel.setOpaque(false);
+        bottomPanel.setBorder(BorderFactory.createEmptyBorder(5, 0, 0, 0));
+        
+        summaryLabel = new JLabel("Load a CSV file to correlate its columns");
+        summaryLabel.setFont(new Font("SansSerif", Font.ITALIC, 11));
+        summaryLabel.setForeground(Color.GRAY);
+        
+        hoverLabel = new JLabel("");
+        hoverLabel.setFont(new Font("SansSerif", Font.PLAIN, 11));
+        hoverLabel.setForeground(new Color(44, 62, 80));
+        
+        bottomPanel.add(summaryLabel, BorderLayout.WEST);
+        bottomPanel.add(hoverLabel, BorderLayout.EAST);
+        
+        add(bottomPanel, BorderLayout.SOUTH);
+    }
+    
+    public void setData(DataModel model) {
+        cancelCalculation();
+        this.model = model;
+        this.matrix = null;
+        heatmapView.setMatrix(null);
+        hoverLabel.setText("");
+        summaryLabel.setText(model.getColumnCount() + " columns loaded. Select a method and calculate.");
+    }
+    
+    /*
+     * Computes the matrix on a worker thread. A calculation still running is
+     * cancelled first.
+     */
+    private void calculate() {
+        if (model == null || !model.hasData()) {
+            JOptionPane.showMessageDialog(this,
+                "No data loaded. Please load a CSV file first.",
+                "No Data",
+                JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        
+        cancelCalculation();
+        
+        CorrelationEngine.Method method = (CorrelationEngine.Method) methodCombo.getSelectedItem();
+        CorrelationEngine current = CorrelationEngine.of(model);
+        engine = current;
+        
+        summaryLabel.setText("Calculating " + method + " correlations of " +
+                             current.getColumnCount() + " columns...");
+        calculateButton.setEnabled(false);
+        long start = System.nanoTime();
+        
+        worker = new SwingWorker<>() {
+            @Override
+            protected CorrelationMatrix doInBackground() {
+                return current.compute(method);
+            }
+            
+            @Override
+            protected void done() {
+                if (engine != current) {
+                    return;
+                }
+                calculateButton.setEnabled(true);
+                try {
+                    CorrelationMatrix result = get();
+                    if (result != null) {
+                        matrix = result;
+                        heatmapView.setMatrix(result);
+                        summaryLabel.setText(method + " correlations of " + result.size() + " columns in " +
+                                             (System.nanoTime() - start) / 1000000 + " ms");
+                    }
+                } catch (InterruptedException | ExecutionException ex) {
+                    summaryLabel.setText("Error calculating correlations: " + ex.getMessage());
+                }
+            }
+        };
+        
+        worker.execute();
+    }
+    
+    /*
+     * Tells the running calculation to stop without waiting for it; its
+     * result is dropped in done once it sees it has been superseded.
+     */
+    private void cancelCalculation() {
+        if (engine != null) {
+            engine.cancel();
+            engine = null;
+        }
+        
+        calculateButton.setEnabled(true);
+    }
+    
+    /*
+     * The calculation last started, which may still be reading the columns
+     * after it was cancelled, so whoever releases their storage can wait for
+     * it off the event thread. Null when none was started.
+     */
+    public Future<?> getPendingWork() {
+        return worker;
+    }
+    
+    public void clearData() {
+        cancelCalculation();
+        model = null;
+        matrix = null;
+        heatmapView.setMatrix(null);
+        hoverLabel.setText("");
+        summaryLabel.setText("Load a CSV file to correlate its columns");
+    }
+    
+    private void showCell(int row, int column) {
+        if (matrix == null || row < 0) {
+            hoverLabel.setText("");
+            return;
+        }
+        
+        double correlation = matrix.getCorrelation(row, column);
+        double covariance = matrix.getCovariance(row, column);
+        
+        hoverLabel.setText(matrix.getColumnName(row) + " vs " + matrix.getColumnName(column) +
+            ": r = " + (Double.isNaN(correlation) ? "N/A" : correlationFormatter.format(correlation)) +
+            " | " + (matrix.getMethod() == CorrelationEngine.Method.SPEARMAN ? "Rank cov" : "Cov") +
+            " = " + (Double.isNaN(covariance) ? "N/A" : formatter.format(covariance)) +
+            " | n = " + matrix.getCount(row, column));
+    }
+    
+    private static int heatColor(double correlation) {
+        if (Double.isNaN(correlation)) {
+            return MISSING_COLOR.getRGB();
+        }
+        
+        Color target = correlation < 0 ? NEGATIVE_COLOR : POSITIVE_COLOR;
+        double t = Math.min(1.0, Math.abs(correlation));
+        int red = (int) Math.round(255 + (target.getRed() - 255) * t);
+        int green = (int) Math.round(255 + (target.getGreen() - 255) * t);
+        int blue = (int) Math.round(255 + (target.getBlue() - 255) * t);
+        return (red << 16) | (green << 8) | blue;
+    }
+    
+    private class HeatmapView extends JComponent {
+        
+        private static final int LEGEND_WIDTH = 16;
+        private static final int LABEL_SPACE = 110;
+        private static final int MIN_LABELED_CELL = 12;
+        
+        private BufferedImage image;
+        private BufferedImage legend;
+        private int size;
+        private int originX;
+        private int originY;
+        private double cellSize;
+        
+        HeatmapView() {
+            setPreferredSize(new Dimension(600, 500));
+            
+            legend = new BufferedImage(1, 201, BufferedImage.TYPE_INT_RGB);
+            for (int i = 0; i <= 200; i++) {
+                legend.setRGB(0, i, heatColor(1.0 - i / 100.0));
+            }
+            
+            addMouseMotionListener(new MouseAdapter() {
+                @Override
+                public void mouseMoved(MouseEvent e) {
+                    int column = (int) Math.floor((e.getX() - originX) / cellSize);
+                    int row = (int) Math.floor((e.getY() - originY) / cellSize);
+                    if (image != null && row >= 0 && row < size && column >= 0 && column < size) {
+                        showCell(row, column);
+                    } else {
+                        showCell(-1, -1);
+                    }
+                }
+            });
+        }
+        
+        void setMatrix(CorrelationMatrix matrix) {
+            if (matrix == null) {
+                image = null;
+                size = 0;
+            } else {
+                size = matrix.size();
+                image = new BufferedImage(Math.max(1, size), Math.max(1, size), BufferedImage.TYPE_INT_RGB);
+                int[] pixels = new int[size * size];
+                for (int row = 0; row < size; row++) {
+                    for (int column = 0; column < size; column++) {
+                        pixels[row * size + column] = heatColor(matrix.getCorrelation(row, column));
+                    }
+                }
+                image.setRGB(0, 0, size, size, pixels, 0, size);
+            }
+            repaint();
+        }
+        
+        @Override
+        protected void paintComponent(Graphics g) {
+            Graphics2D g2d = (Graphics2D) g;
+            g2d.setColor(Color.WHITE);
+            g2d.fillRect(0, 0, getWidth(), getHeight());
+            
+            if (image == null || size == 0) {
+                g2d.setColor(Color.GRAY);
+                g2d.setFont(new Font("SansSerif", Font.ITALIC, 13));
+                String message = "Calculate to see the correlation heatmap";
+                FontMetrics fm = g2d.getFontMetrics();
+                g2d.drawString(message, (getWidth() - fm.stringWidth(message)) / 2, getHeight() / 2);
+                return;
+            }
+            
+            int available = Math.min(getWidth() - LEGEND_WIDTH - 60, getHeight() - 20);
+            boolean labeled = (double) (available - LABEL_SPACE) / size >= MIN_LABELED_CELL;
+            int margin = labeled ? LABEL_SPACE : 10;
+            
+            cellSize = Math.max(1.0, (double) (available - margin) / size);
+            int side = (int) Math.round(cellSize * size);
+            originX = margin;
+            originY = labeled ? margin : 10;
+            
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            g2d.drawImage(image, originX, originY, side, side, null);
+            g2d.setColor(new Color(200, 200, 200));
+            g2d.drawRect(originX, originY, side, side);
+            
+            if (labeled) {
+                drawLabels(g2d);
+            }
+            
+            drawLegend(g2d, originX + side + 20, originY, side);
+        }
+        
+        private void drawLabels(Graphics2D g2d) {
+            g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g2d.setFont(new Font("SansSerif", Font.PLAIN, (int) Math.min(12, cellSize - 2)));
+            g2d.setColor(new Color(44, 62, 80));
+            FontMetrics fm = g2d.getFontMetrics();
+            
+            for (int i = 0; i < size; i++) {
+                String name = clip(matrix.getColumnName(i), fm, LABEL_SPACE - 8);
+                int center = (int) (originY + (i + 0.5) * cellSize) + fm.getAscent() / 2 - 1;
+                g2d.drawString(name, originX - 4 - fm.stringWidth(name), center);
+            }
+            
+            Graphics2D rotated = (Graphics2D) g2d.create();
+            rotated.rotate(-Math.PI / 2);
+            for (int i = 0; i < size; i++) {
+                String name = clip(matrix.getColumnName(i), fm, LABEL_SPACE - 8);
+                int center = (int) (originX + (i + 0.5) * cellSize) + fm.getAscent() / 2 - 1;
+                rotated.drawString(name, -(originY - 4), center);
+            }
+            rotated.dispose();
+        }
+        
+        private String clip(String text, FontMetrics fm, int width) {
+            if (fm.stringWidth(text) <= width) {
+                return text;
+            }
+            while (text.length() > 1 && fm.stringWidth(text + "...") > width) {
+                text = text.substring(0, text.length() - 1);
+            }
+            return text + "...";
+        }
+        
+        private void drawLegend(Graphics2D g2d, int x, int y, int height) {
+            g2d.drawImage(legend, x, y, LEGEND_WIDTH, height, null);
+            g2d.setColor(new Color(200, 200, 200));
+            g2d.drawRect(x, y, LEGEND_WIDTH, height);
+            
+            g2d.setColor(new Color(80, 80, 80));
+            g2d.setFont(new Font("SansSerif", Font.PLAIN, 10));
+            g2d.drawString("+1", x + LEGEND_WIDTH + 4, y + 10);
+            g2d.drawString("0", x + LEGEND_WIDTH + 4, y + height / 2 + 4);
+            g2d.drawString("-1", x + LEGEND_WIDTH + 4, y + height);
+        }
+    }
+}
@@ -7,9 +7,14 @@ import java.util.*;
  */
 public class DataModel {
     
-    private Map<String, List<Double>> columnData;
+    private Map<String, NumericColumn> columnData;
+    private Map<String, RunningStatistics> columnStatistics;
+    private Map<String, RangeIndex> rangeIndexes;
+    private ColumnStorage columnStorage;
     private List<String> columnNames;
     private List<String[]> rawRecords;
+    private RecordTable encodedRecords;
+    private RecordRetention recordRetention;
     private String sourceFileName;
     private int totalRecords;
     private int validRecords;
@@ -17,8 +22,13 @@ public class DataModel {
     
     public DataModel() {
         this.columnData = new LinkedHashMap<>();
+        this.columnStatistics = new HashMap<>();
+        this.rangeIndexes = new HashMap<>();
         this.columnNames = new ArrayList<>();
         this.rawRecords = new ArrayList<>();
+        this.encodedRecords = new RecordTable();
+        this.recordRetention = RecordRetention.NONE;
+        this.columnStorage = ColumnStorage.HEAP;
         this.totalRecords = 0;
         this.validRecords = 0;
         this.skippedRecords = 0;
@@ -27,31 +37,89 @@ public class DataModel {
     public void addColumn(String name) {
         if (!columnData.containsKey(name)) {
             columnNames.add(name);
-            columnData.put(name, new ArrayList<>());
+            columnData.put(name, columnStorage.createColumn());
+            columnStatistics.put(name, new RunningStatistics());
         }
     }
     
-    public void addValueToColumn(String columnName, Double value) {
-        if (columnData.containsKey(columnName)) {
-            columnData.get(columnName).add(value);
+    public void addValueToColumn(String columnName, double value) {
+        NumericColumn column = columnData.get(columnName);
+        if (column != null) {
+            column.add(value);
+            rangeIndexes.remove(columnName);
+            if (!Double.isNaN(value)) {
+                columnStatistics.get(columnName).add(value);
+            }
+        }
+    }
+    
+    public void addValuesToColumn(String columnName, double[] values, int count) {
+        NumericColumn column = columnData.get(columnName);
+        if (column != null) {
+            column.addAll(values, count);
+            rangeIndexes.remove(columnName);
+            columnStatistics.get(columnName).append(values, count);
         }
     }
     
     public void addRawRecord(String[] record) {
-        rawRecords.add(record);
+        if (recordRetention == RecordRetention.FULL) {
+            rawRecords.add(record);
+        } else if (recordRetention == RecordRetention.DICTIONARY) {
+            encodedRecords.addRecord(record);
+        }
     }
     
-    public List<Double> getColumnValues(String columnName) {
-        return columnData.getOrDefault(columnName, new ArrayList<>());
+    public void addRawRecords(RecordTable records) {
+        if (recordRetention == RecordRetention.DICTIONARY) {
+            encodedRecords.addAll(records);
+        } else if (recordRetention == RecordRetention.FULL) {
+            for (int row = 0; row < records.getRowCount(); row++) {
+                rawRecords.add(records.getRecord(row));
+            }
+        }
     }
     
-    public double[] getColumnAsArray(String columnName) {
-        List<Double> values = getColumnValues(columnName);
-        double[] arr = new double[values.size()];
-        for (int i = 0; i < values.size(); i++) {
-            arr[i] = values.get(i);
+    public ColumnView getColumn(String columnName) {
+        ColumnView column = columnData.get(columnName);
+        return column != null ? column : ColumnView.EMPTY;
+    }
+    
+    /*
+     * Moments of the column's valid values, kept up to date as values are
+     * added, so they are available as soon as loading ends.
+     */
+    public RunningStatistics getColumnStatistics(String columnName) {
+        RunningStatistics statistics = columnStatistics.get(columnName);
+        return statistics != null ? statistics : new RunningStatistics();
+    }
+    
+    /*
+     * Constant-time statistics over row ranges of a column, built on first
+     * request and dropped when values are added to the column.
+     */
+    public RangeIndex getRangeIndex(String columnName) {
+        RangeIndex index = rangeIndexes.get(columnName);
+        if (index == null) {
+            index = new RangeIndex(getColumn(columnName), getColumnStatistics(columnName).getMean());
+            rangeIndexes.put(columnName, index);
         }
-        return arr;
+        return index;
+    }
+    
+    public double[] getColumnAsArray(String columnName) {
+        return getColumn(columnName).toValidArray();
+    }
+    
+    /*
+     * Applies to columns added afterwards; existing columns keep their storage.
+     */
+    public void setColumnStorage(ColumnStorage columnStorage) {
+        this.columnStorage = columnStorage != null ? columnStorage : ColumnStorage.HEAP;
+    }
+    
+    public ColumnStorage getColumnStorage() {
+        return columnStorage;
     }
     
     public List<String> getColumnNames() {
@@ -63,11 +131,44 @@ public class DataModel {
     }
     
     public int getRecordCount(String columnName) {
-        return columnData.containsKey(columnName) ? columnData.get(columnName).size() : 0;
+        return getColumn(columnName).size();
+    }
+    
+    public int getValidCount(String columnName) {
+        return getColumn(columnName).validCount();
     }
     
+    /*
+     * With dictionary retention the records are rebuilt on access; with no
+     * retention the list is empty.
+     */
     public List<String[]> getRawRecords() {
-        return rawRecords;
+        if (recordRetention != RecordRetention.DICTIONARY) {
+            return rawRecords;
+        }
+        
+        return new AbstractList<String[]>() {
+            @Override
+            public String[] get(int index) {
+                return encodedRecords.getRecord(index);
+            }
+            
+            @Override
+            public int size() {
+                return encodedRecords.getRowCount();
+            }
+        };
+    }
+    
+    /*
+     * Applies to records added afterwards.
+     */
+    public void setRecordRetention(RecordRetention recordRetention) {
+        this.recordRetention = recordRetention != null ? recordRetention : RecordRetention.NONE;
+    }
+    
+    public RecordRetention getRecordRetention() {
+        return recordRetention;
     }
     
     public String getSourceFileName() {
@@ -103,9 +204,15 @@ public class DataModel {
     }
     
     public void clearData() {
+        for (NumericColumn column : columnData.values()) {
+            column.clear();
+        }
         columnData.clear();
+        columnStatistics.clear();
+        rangeIndexes.clear();
         columnNames.clear();
         rawRecords.clear();
+        encodedRecords.clear();
         totalRecords = 0;
         validRecords = 0;
         skippedRecords = 0;
@@ -117,8 +224,8 @@ public class DataModel {
     }
     
     public Double getValueAt(String columnName, int index) {
-        List<Double> values = columnData.get(columnName);
-        if (values != null && index >= 0 && index < values.size()) {
+        ColumnView values = getColumn(columnName);
+        if (values.isValid(index)) {
             return values.get(index);
         }
         return null;
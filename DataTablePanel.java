@@ -14,11 +14,13 @@ import java.util.List;
 public class DataTablePanel extends JPanel {
     
     private JTable dataTable;
-    private DefaultTableModel tableModel;
+    private ColumnTableModel tableModel;
     private JLabel infoLabel;
+    private JLabel selectionLabel;
+    private DataModel model;
     private JComboBox<String> highlightColumnCombo;
     private JTextField searchField;
-    private TableRowSorter<DefaultTableModel> rowSorter;
+    private TableRowSorter<ColumnTableModel> rowSorter;
     private DecimalFormat formatter;
     private int highlightColumnIndex;
     
@@ -76,19 +78,14 @@ public class DataTablePanel extends JPanel {
         
         add(topPanel, BorderLayout.NORTH);
         
-        tableModel = new DefaultTableModel() {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        tableModel = new ColumnTableModel();
         
         dataTable = new JTable(tableModel);
         dataTable.setFont(new Font("SansSerif", Font.PLAIN, 12));
         dataTable.setRowHeight(24);
         dataTable.setShowGrid(true);
         dataTable.setGridColor(new Color(230, 230, 230));
-        dataTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        dataTable.setSelectionMode(ListSelectionModel.SINGLE_INTERVAL_SELECTION);
         dataTable.setSelectionBackground(new Color(52, 152, 219, 80));
         dataTable.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
         
@@ -102,6 +99,9 @@ public class DataTablePanel extends JPanel {
         dataTable.setRowSorter(rowSorter);
         
         dataTable.setDefaultRenderer(Object.class, new HighlightCellRenderer());
+        dataTable.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) updateSelectionStatistics();
+        });
         
         JScrollPane scrollPane = new JScrollPane(dataTable);
         scrollPane.setBorder(BorderFactory.createLineBorder(new Color(200, 200, 200)));
@@ -113,14 +113,23 @@ public class DataTablePanel extends JPanel {
         infoLabel = new JLabel("No data loaded");
         infoLabel.setFont(new Font("SansSerif", Font.ITALIC, 11));
         infoLabel.setForeground(Color.GRAY);
-        infoLabel.setBorder(BorderFactory.createEmptyBorder(5, 0, 0, 0));
         
-        add(infoLabel, BorderLayout.SOUTH);
+        selectionLabel = new JLabel("");
+        selectionLabel.setFont(new Font("SansSerif", Font.PLAIN, 11));
+        selectionLabel.setForeground(new Color(44, 62, 80));
+        
+        JPanel bottomPanel = new JPanel(new BorderLayout(10, 0));
+        bottomPanel.setOpaque(false);
+        bottomPanel.setBorder(BorderFactory.createEmptyBorder(5, 0, 0, 0));
+        bottomPanel.add(infoLabel, BorderLayout.WEST);
+        bottomPanel.add(selectionLabel, BorderLayout.EAST);
+        
+        add(bottomPanel, BorderLayout.SOUTH);
     }
     
     public void loadData(DataModel model) {
-        tableModel.setRowCount(0);
-        tableModel.setColumnCount(0);
+        this.model = model;
+        tableModel.clear();
         highlightColumnCombo.removeAllItems();
         highlightColumnCombo.addItem("None");
         highlightColumnIndex = -1;
@@ -132,33 +141,11 @@ public class DataTablePanel extends JPanel {
         
         List<String> columns = model.getColumnNames();
         
-        tableModel.addColumn("Row #");
         for (String col : columns) {
-            tableModel.addColumn(col);
             highlightColumnCombo.addItem(col);
         }
         
-        int maxRecords = 0;
-        for (String col : columns) {
-            int count = model.getRecordCount(col);
-            if (count > maxRecords) maxRecords = count;
-        }
-        
-        for (int row = 0; row < maxRecords; row++) {
-            Object[] rowData = new Object[columns.size() + 1];
-            rowData[0] = row + 1;
-            
-            for (int col = 0; col < columns.size(); col++) {
-                Double value = model.getValueAt(columns.get(col), row);
-                if (value != null) {
-                    rowData[col + 1] = formatter.format(value);
-                } else {
-                    rowData[col + 1] = "";
-                }
-            }
-            
-            tableModel.addRow(rowData);
-        }
+        tableModel.setColumns(model);
         
         for (int i = 0; i < dataTable.getColumnCount(); i++) {
             TableColumn column = dataTable.getColumnModel().getColumn(i);
@@ -199,6 +186,54 @@ public class DataTablePanel extends JPanel {
         }
         
         dataTable.repaint();
+        updateSelectionStatistics();
+    }
+    
+    /*
+     * Count, sum, mean and standard deviation of the highlighted column over
+     * the selected rows. An unsorted, unfiltered selection is a contiguous
+     * range of model rows and comes from the column's range index in
+     * constant time; otherwise the selected rows are visited one by one.
+     */
+    private void updateSelectionStatistics() {
+        int first = dataTable.getSelectionModel().getMinSelectionIndex();
+        int last = dataTable.getSelectionModel().getMaxSelectionIndex();
+        String column = (String) highlightColumnCombo.getSelectedItem();
+        
+        if (model == null || first < 0 || column == null || column.equals("None")) {
+            selectionLabel.setText(first >= 0 ? "Selected rows: " + (last - first + 1) : "");
+            return;
+        }
+        
+        int count;
+        double sum;
+        double mean;
+        double stdDev;
+        
+        if (rowSorter.getSortKeys().isEmpty() && rowSorter.getRowFilter() == null) {
+            RangeIndex.Range range = model.getRangeIndex(column).range(first, last + 1);
+            count = range.getCount();
+            sum = range.getSum();
+            mean = range.getMean();
+            stdDev = range.getStandardDeviation();
+        } else {
+            ColumnView values = model.getColumn(column);
+            RunningStatistics stats = new RunningStatistics();
+            for (int row = first; row <= last; row++) {
+                int modelRow = dataTable.convertRowIndexToModel(row);
+                if (values.isValid(modelRow)) {
+                    stats.add(values.get(modelRow));
+                }
+            }
+            count = (int) stats.getCount();
+            sum = stats.getSum();
+            mean = stats.getMean();
+            stdDev = stats.getStandardDeviation();
+        }
+        
+        selectionLabel.setText(String.format("%s, rows %d-%d: n=%d | Sum: %s | Mean: %s | Std Dev: %s",
+            column, first + 1, last + 1, count, formatter.format(sum),
+            formatter.format(mean), formatter.format(stdDev)));
     }
     
     private void applyFilter() {
@@ -216,13 +251,14 @@ public class DataTablePanel extends JPanel {
     }
     
     public void clearData() {
-        tableModel.setRowCount(0);
-        tableModel.setColumnCount(0);
+        tableModel.clear();
         highlightColumnCombo.removeAllItems();
         highlightColumnCombo.addItem("None");
         highlightColumnIndex = -1;
         searchField.setText("");
         infoLabel.setText("No data loaded");
+        selectionLabel.setText("");
+        model = null;
     }
     
     public void setHighlightColumn(String columnName) {
@@ -234,6 +270,64 @@ public class DataTablePanel extends JPanel {
         }
     }
     
+    /*
+     * Reads cells straight from the model's column views and formats only the
+     * cells the table asks for, instead of copying every value into a row of
+     * Strings up front.
+     */
+    private class ColumnTableModel extends AbstractTableModel {
+        
+        private List<String> names = new ArrayList<>();
+        private List<ColumnView> columns = new ArrayList<>();
+        private int rowCount;
+        
+        void setColumns(DataModel model) {
+            names = model.getColumnNames();
+            columns = new ArrayList<>();
+            rowCount = 0;
+            
+            for (String name : names) {
+                ColumnView column = model.getColumn(name);
+                columns.add(column);
+                rowCount = Math.max(rowCount, column.size());
+            }
+            
+            fireTableStructureChanged();
+        }
+        
+        void clear() {
+            names = new ArrayList<>();
+            columns = new ArrayList<>();
+            rowCount = 0;
+            fireTableStructureChanged();
+        }
+        
+        @Override
+        public int getRowCount() {
+            return rowCount;
+        }
+        
+        @Override
+        public int getColumnCount() {
+            return columns.isEmpty() ? 0 : columns.size() + 1;
+        }
+        
+        @Override
+        public String getColumnName(int column) {
+            return column == 0 ? "Row #" : names.get(column - 1);
+        }
+        
+        @Override
+        public Object getValueAt(int row, int column) {
+            if (column == 0) {
+                return row + 1;
+            }
+            
+            ColumnView values = columns.get(column - 1);
+            return values.isValid(row) ? formatter.format(values.get(row)) : "";
+        }
+    }
+    
     private class HighlightCellRenderer extends DefaultTableCellRenderer {
         
         private Color highlightColor = new Color(46, 204, 113, 60);
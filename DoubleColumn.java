@@ -0,0 +1,137 @@
+package analyzer;
+
+import java.util.Arrays;
+
+/**
+ * Growable column of primitive doubles stored in fixed-size segments, so
+ * appending never copies more than one segment and a column never needs a
+ * single huge contiguous array. Only the last segment can be partly filled;
+ * it grows by doubling until it reaches the segment size.
+ *
+ * Every appended row takes a slot. NaN is stored as a missing value: the
+ * slot keeps NaN and its validity bit stays clear.
+ *
+ * @author Lukasz Golinski
+ */
+public class DoubleColumn implements NumericColumn {
+    
+    private static final int SEGMENT_SHIFT = 16;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final int INITIAL_CAPACITY = 16;
+    
+    private double[][] segments;
+    private int segmentCount;
+    private int size;
+    private ValidityBitmap validity;
+    
+    public DoubleColumn() {
+        this.segments = new double[4][];
+        this.segmentCount = 0;
+        this.size = 0;
+        this.validity = new ValidityBitmap();
+    }
+    
+    @Override
+    public void add(double value) {
+        int segment = size >>> SEGMENT_SHIFT;
+        int offset = size & SEGMENT_MASK;
+        
+        if (segment == segmentCount || offset == segments[segment].length) {
+            ensureSegment(segment, offset + 1);
+        }
+        
+        segments[segment][offset] = value;
+        if (!Double.isNaN(value)) {
+            validity.set(size);
+        }
+        size++;
+    }
+    
+    @Override
+    public void addAll(double[] values, int count) {
+        int copied = 0;
+        
+        while (copied < count) {
+            int segment = size >>> SEGMENT_SHIFT;
+            int offset = size & SEGMENT_MASK;
+            int length = Math.min(count - copied, SEGMENT_SIZE - offset);
+            
+            ensureSegment(segment, offset + length);
+            System.arraycopy(values, copied, segments[segment], offset, length);
+            
+            for (int i = 0; i < length; i++) {
+                if (!Double.isNaN(values[copied + i])) {
+                    validity.set(size + i);
+                }
+            }
+            
+            copied += length;
+            size += length;
+        }
+    }
+    
+    private void ensureSegment(int segment, int required) {
+        if (segment == segmentCount) {
+            if (segmentCount == segments.length) {
+                segments = Arrays.copyOf(segments, segmentCount * 2);
+            }
+            int capacity = segmentCount == 0 ? INITIAL_CAPACITY : SEGMENT_SIZE;
+            segments[segmentCount++] = new double[Math.max(capacity, required)];
+        } else if (segments[segment].length < required) {
+            int capacity = segments[segment].length;
+            while (capacity < required) {
+                capacity = Math.min(SEGMENT_SIZE, capacity * 2);
+            }
+            segments[segment] = Arrays.copyOf(segments[segment], capacity);
+        }
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public double get(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of range for column of size " + size);
+        }
+        return segments[row >>> SEGMENT_SHIFT][row & SEGMENT_MASK];
+    }
+    
+    @Override
+    public boolean isValid(int row) {
+        return row >= 0 && row < size && validity.get(row);
+    }
+    
+    @Override
+    public int validCount() {
+        return validity.cardinality();
+    }
+    
+    @Override
+    public long validityWord(int word) {
+        return validity.word(word);
+    }
+    
+    @Override
+    public void copyTo(int from, double[] dest, int destPos, int length) {
+        while (length > 0) {
+            int offset = from & SEGMENT_MASK;
+            int chunk = Math.min(length, SEGMENT_SIZE - offset);
+            System.arraycopy(segments[from >>> SEGMENT_SHIFT], offset, dest, destPos, chunk);
+            from += chunk;
+            destPos += chunk;
+            length -= chunk;
+        }
+    }
+    
+    @Override
+    public void clear() {
+        segments = new double[4][];
+        segmentCount = 0;
+        size = 0;
+        validity.clear();
+    }
+}
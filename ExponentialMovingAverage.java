@@ -0,0 +1,155 @@
+package analyzer;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Exponential moving averages, with the first average equal to the first
+ * value, and the double and triple EMAs built from them.
+ *
+ * Each step of the recurrence ema[i] = alpha * x[i] + (1 - alpha) * ema[i - 1]
+ * is an affine map, and a run of steps composes into one: starting a chunk
+ * of the series from zero and adding (1 - alpha)^k times the value carried
+ * in gives the same averages. The parallel version smooths every chunk from
+ * zero at once, carries the chunk ends across in order and then adds the
+ * carried-in part to each chunk at once. It rounds differently from the
+ * sequential loop, by a few ulps of the largest value in the series.
+ *
+ * @author Lukasz Golinski
+ */
+public class ExponentialMovingAverage {
+    
+    private static final int CHUNKS_PER_THREAD = 4;
+    
+    private ExponentialMovingAverage() {
+    }
+    
+    public static double[] of(ColumnView values, double alpha, boolean parallel) {
+        if (values.size() == 0) {
+            return new double[0];
+        }
+        return parallel ? parallel(values, alpha) : sequential(values, alpha);
+    }
+    
+    /*
+     * 2 * EMA - EMA(EMA), which follows a trend with less lag.
+     */
+    public static double[] doubleOf(ColumnView values, double alpha, boolean parallel) {
+        double[] first = of(values, alpha, parallel);
+        double[] second = of(ColumnView.wrap(first), alpha, parallel);
+        
+        for (int i = 0; i < first.length; i++) {
+            first[i] = 2 * first[i] - second[i];
+        }
+        return first;
+    }
+    
+    /*
+     * 3 * EMA - 3 * EMA(EMA) + EMA(EMA(EMA)).
+     */
+    public static double[] tripleOf(ColumnView values, double alpha, boolean parallel) {
+        double[] first = of(values, alpha, parallel);
+        double[] second = of(ColumnView.wrap(first), alpha, parallel);
+        double[] third = of(ColumnView.wrap(second), alpha, parallel);
+        
+        for (int i = 0; i < first.length; i++) {
+            first[i] = 3 * first[i] - 3 * second[i] + third[i];
+        }
+        return first;
+    }
+    
+    static double[] sequential(ColumnView values, double alpha) {
+        int size = values.size();
+        double[] ema = new double[size];
+        ema[0] = values.get(0);
+        
+        for (int i = 1; i < size; i++) {
+            ema[i] = alpha * values.get(i) + (1 - alpha) * ema[i - 1];
+        }
+        
+        return ema;
+    }
+    
+    static double[] parallel(ColumnView values, double alpha) {
+        int size = values.size();
+        int chunks = Math.min(size, ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD);
+        int chunkSize = (size + chunks - 1) / chunks;
+        chunks = (size + chunkSize - 1) / chunkSize;
+        
+        double[] ema = new double[size];
+        ForkJoinPool.commonPool().invoke(new ChunkTask(values, ema, alpha, chunkSize, 0, chunks, null));
+        
+        double decay = 1 - alpha;
+        double[] carries = new double[chunks];
+        for (int c = 1; c < chunks; c++) {
+            int start = c * chunkSize;
+            int end = Math.min(size, start + chunkSize);
+            carries[c] = ema[start - 1];
+            ema[end - 1] += Math.pow(decay, end - start) * carries[c];
+        }
+        
+        ForkJoinPool.commonPool().invoke(new ChunkTask(values, ema, alpha, chunkSize, 1, chunks, carries));
+        return ema;
+    }
+    
+    /*
+     * Smooths a range of chunks from zero, or, when carries are given, adds
+     * the decayed carry to every average but the last of each chunk, which
+     * the sequential carry step has already corrected.
+     */
+    private static final class ChunkTask extends RecursiveAction {
+        
+        private final ColumnView values;
+        private final double[] ema;
+        private final double alpha;
+        private final int chunkSize;
+        private final int fromChunk;
+        private final int toChunk;
+        private final double[] carries;
+        
+        ChunkTask(ColumnView values, double[] ema, double alpha, int chunkSize,
+                  int fromChunk, int toChunk, double[] carries) {
+            this.values = values;
+            this.ema = ema;
+            this.alpha = alpha;
+            this.chunkSize = chunkSize;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+            this.carries = carries;
+        }
+        
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk > 1) {
+                int middle = (fromChunk + toChunk) >>> 1;
+                invokeAll(new ChunkTask(values, ema, alpha, chunkSize, fromChunk, middle, carries),
+                          new ChunkTask(values, ema, alpha, chunkSize, middle, toChunk, carries));
+                return;
+            }
+            
+            int start = fromChunk * chunkSize;
+            int end = Math.min(ema.length, start + chunkSize);
+            double decay = 1 - alpha;
+            
+            if (carries == null) {
+                double previous = 0.0;
+                if (start == 0) {
+                    previous = values.get(0);
+                    ema[0] = previous;
+                    start = 1;
+                }
+                for (int i = start; i < end; i++) {
+                    previous = alpha * values.get(i) + decay * previous;
+                    ema[i] = previous;
+                }
+            } else {
+                /* Stops once the carry has decayed below the normal range. */
+                double carry = decay * carries[fromChunk];
+                for (int i = start; i < end - 1 && Math.abs(carry) >= Double.MIN_NORMAL; i++) {
+                    ema[i] += carry;
+                    carry *= decay;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package analyzer;
+
+import java.util.*;
+
+/**
+ * The mode, the most frequent values and the distinct count of a column in
+ * memory that does not grow with the column, for columns kept off the heap
+ * where a FrequencyTable of every distinct value might not fit on it.
+ *
+ * A first pass keeps at most CAPACITY Misra-Gries candidates and a
+ * HyperLogLog estimate of the distinct count; a second pass counts the
+ * candidates exactly. Every value that occurs more than n / (CAPACITY + 1)
+ * times survives as a candidate, so the mode and the top values are exact
+ * whenever the mode is that frequent, which isModeExact reports. When the
+ * column has no more distinct values than CAPACITY, nothing is ever
+ * dropped and every result is exact; otherwise the distinct count is an
+ * estimate within about one percent. Values are told apart by their bits,
+ * as FrequencyTable does.
+ *
+ * @author Lukasz Golinski
+ */
+public class FrequencySketch {
+    
+    public static final int CAPACITY = 4096;
+    
+    private static final int REGISTER_BITS = 14;
+    private static final int REGISTERS = 1 << REGISTER_BITS;
+    
+    private final FrequencyTable candidates;
+    private final long total;
+    private final boolean complete;
+    private final int distinct;
+    
+    private FrequencySketch(FrequencyTable candidates, long total, boolean complete, int distinct) {
+        this.candidates = candidates;
+        this.total = total;
+        this.complete = complete;
+        this.distinct = distinct;
+    }
+    
+    public static FrequencySketch of(ColumnView column) {
+        Candidates first = new Candidates();
+        byte[] registers = new byte[REGISTERS];
+        
+        for (int w = 0, words = column.wordCount(); w < words; w++) {
+            long bits = column.validityWord(w);
+            while (bits != 0) {
+                long key = Double.doubleToLongBits(column.get((w << 6) + Long.numberOfTrailingZeros(bits)));
+                first.add(key);
+                
+                long hash = mix(key);
+                int register = (int) (hash >>> (64 - REGISTER_BITS));
+                int rank = Long.numberOfLeadingZeros((hash << REGISTER_BITS) | (1L << (REGISTER_BITS - 1))) + 1;
+                if (rank > registers[register]) {
+                    registers[register] = (byte) rank;
+                }
+                bits &= bits - 1;
+            }
+        }
+        
+        FrequencyTable table = new FrequencyTable();
+        if (first.dropped) {
+            int[] exact = new int[first.size];
+            for (int w = 0, words = column.wordCount(); w < words; w++) {
+                long bits = column.validityWord(w);
+                while (bits != 0) {
+                    int position = first.find(Double.doubleToLongBits(column.get((w << 6) + Long.numberOfTrailingZeros(bits))));
+                    if (position >= 0) {
+                        exact[position]++;
+                    }
+                    bits &= bits - 1;
+                }
+            }
+            for (int i = 0; i < first.size; i++) {
+                table.add(Double.longBitsToDouble(first.keys[i]), exact[i]);
+            }
+        } else {
+            for (int i = 0; i < first.size; i++) {
+                table.add(Double.longBitsToDouble(first.keys[i]), first.counts[i]);
+            }
+        }
+        
+        int distinct = first.dropped
+                     ? (int) Math.max(table.getDistinctCount(), Math.min(Integer.MAX_VALUE, Math.round(estimate(registers))))
+                     : first.size;
+        return new FrequencySketch(table, column.validCount(), !first.dropped, distinct);
+    }
+    
+    /*
+     * HyperLogLog's harmonic-mean estimate, with linear counting while many
+     * registers are still empty. The 64-bit hash needs no correction at the
+     * top of the range.
+     */
+    private static double estimate(byte[] registers) {
+        double sum = 0.0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += Math.scalb(1.0, -register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        
+        double m = registers.length;
+        double raw = 0.7213 / (1 + 1.079 / m) * m * m / sum;
+        if (raw <= 2.5 * m && zeros > 0) {
+            return m * Math.log(m / zeros);
+        }
+        return raw;
+    }
+    
+    private static long mix(long key) {
+        long h = (key ^ (key >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+    
+    public double getMode() {
+        return candidates.getMode();
+    }
+    
+    public int getModeFrequency() {
+        return candidates.getModeFrequency();
+    }
+    
+    public List<FrequencyTable.Entry> getTopValues(int k) {
+        return candidates.getTopValues(k);
+    }
+    
+    public int getDistinctCount() {
+        return distinct;
+    }
+    
+    public long getTotalCount() {
+        return total;
+    }
+    
+    /*
+     * Whether the mode, its frequency and the top values are certainly the
+     * column's own: nothing was dropped, or the mode occurs often enough
+     * that no value more frequent than those listed can have been.
+     */
+    public boolean isModeExact() {
+        return complete || getModeFrequency() > total / (CAPACITY + 1);
+    }
+    
+    public boolean isDistinctCountExact() {
+        return complete;
+    }
+    
+    /*
+     * Misra-Gries summary: a new value takes a free counter, and when none is
+     * free every counter, the new value's included, goes down by one and the
+     * counters that reach zero are freed. Counts are kept in insertion order
+     * with an open-addressing index over them that is rebuilt after each
+     * decrement.
+     */
+    private static final class Candidates {
+        
+        private final long[] keys = new long[CAPACITY];
+        private final int[] counts = new int[CAPACITY];
+        private final int[] index = new int[CAPACITY * 4];
+        private final int mask = index.length - 1;
+        private int size;
+        private boolean dropped;
+        
+        void add(long key) {
+            int slot = (int) mix(key) & mask;
+            while (index[slot] != 0) {
+                int position = index[slot] - 1;
+                if (keys[position] == key) {
+                    counts[position]++;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            
+            if (size < CAPACITY) {
+                keys[size] = key;
+                counts[size] = 1;
+                index[slot] = ++size;
+                return;
+            }
+            
+            dropped = true;
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (--counts[i] > 0) {
+                    keys[kept] = keys[i];
+                    counts[kept] = counts[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            
+            Arrays.fill(index, 0);
+            for (int i = 0; i < size; i++) {
+                int free = (int) mix(keys[i]) & mask;
+                while (index[free] != 0) {
+                    free = (free + 1) & mask;
+                }
+                index[free] = i + 1;
+            }
+        }
+        
+        int find(long key) {
+            int slot = (int) mix(key) & mask;
+            while (index[slot] != 0) {
+                int position = index[slot] - 1;
+                if (keys[position] == key) {
+                    return position;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package analyzer;
+
+import java.util.*;
+
+/**
+ * Counts how often each distinct value occurs, using an open-addressing
+ * table of primitive keys and counts so nothing is boxed. Values are told
+ * apart by their bits, as Double.equals does, so 0.0 and -0.0 are counted
+ * separately. When several values share the highest count the smallest is
+ * reported as the mode.
+ *
+ * @author Lukasz Golinski
+ */
+public class FrequencyTable {
+    
+    private static final int INITIAL_CAPACITY = 64;
+    
+    private long[] keys;
+    private int[] counts;
+    private int mask;
+    private int distinct;
+    private long total;
+    
+    public FrequencyTable() {
+        this.keys = new long[INITIAL_CAPACITY];
+        this.counts = new int[INITIAL_CAPACITY];
+        this.mask = INITIAL_CAPACITY - 1;
+    }
+    
+    public static FrequencyTable of(ColumnView column) {
+        FrequencyTable table = new FrequencyTable();
+        for (int w = 0, words = column.wordCount(); w < words; w++) {
+            long bits = column.validityWord(w);
+            while (bits != 0) {
+                table.add(column.get((w << 6) + Long.numberOfTrailingZeros(bits)));
+                bits &= bits - 1;
+            }
+        }
+        return table;
+    }
+    
+    /*
+     * Builds the table from values that are already sorted, one run of equal
+     * values at a time, without hashing each value.
+     */
+    public static FrequencyTable ofSorted(double[] sorted, int length) {
+        FrequencyTable table = new FrequencyTable();
+        int start = 0;
+        while (start < length) {
+            long bits = Double.doubleToLongBits(sorted[start]);
+            int end = start + 1;
+            while (end < length && Double.doubleToLongBits(sorted[end]) == bits) {
+                end++;
+            }
+            table.add(sorted[start], end - start);
+            start = end;
+        }
+        return table;
+    }
+    
+    public void add(double value) {
+        add(value, 1);
+    }
+    
+    public void add(double value, int occurrences) {
+        long key = Double.doubleToLongBits(value);
+        int slot = slot(key);
+        
+        while (counts[slot] != 0) {
+            if (keys[slot] == key) {
+                counts[slot] += occurrences;
+                total += occurrences;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        
+        keys[slot] = key;
+        counts[slot] = occurrences;
+        total += occurrences;
+        
+        if (++distinct * 2 > keys.length) {
+            grow();
+        }
+    }
+    
+    /*
+     * The bits of decimal data vary mostly in the low mantissa, so the key is
+     * fully mixed before masking to keep the probe sequences short.
+     */
+    private int slot(long key) {
+        long h = (key ^ (key >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return (int) (h ^ (h >>> 33)) & mask;
+    }
+    
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        mask = keys.length - 1;
+        
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldCounts[i] != 0) {
+                int slot = slot(oldKeys[i]);
+                while (counts[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+    
+    public int getDistinctCount() {
+        return distinct;
+    }
+    
+    public long getTotalCount() {
+        return total;
+    }
+    
+    public int getCount(double value) {
+        long key = Double.doubleToLongBits(value);
+        int slot = slot(key);
+        while (counts[slot] != 0) {
+            if (keys[slot] == key) {
+                return counts[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+    
+    public double getMode() {
+        int best = -1;
+        for (int i = 0; i < keys.length; i++) {
+            if (counts[i] != 0 && (best < 0 || ranksBefore(i, best))) {
+                best = i;
+            }
+        }
+        return best < 0 ? Double.NaN : Double.longBitsToDouble(keys[best]);
+    }
+    
+    public int getModeFrequency() {
+        int max = 0;
+        for (int count : counts) {
+            if (count > max) max = count;
+        }
+        return max;
+    }
+    
+    /*
+     * The k most frequent values, most frequent first; equal counts are
+     * ordered by value.
+     */
+    public List<Entry> getTopValues(int k) {
+        if (k <= 0) return new ArrayList<>();
+        
+        PriorityQueue<Integer> heap = new PriorityQueue<>(k + 1, (a, b) -> ranksBefore(a, b) ? 1 : -1);
+        for (int i = 0; i < keys.length; i++) {
+            if (counts[i] == 0) continue;
+            if (heap.size() < k) {
+                heap.add(i);
+            } else if (ranksBefore(i, heap.peek())) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+        
+        List<Entry> top = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            int slot = heap.poll();
+            top.add(new Entry(Double.longBitsToDouble(keys[slot]), counts[slot]));
+        }
+        Collections.reverse(top);
+        return top;
+    }
+    
+    private boolean ranksBefore(int a, int b) {
+        if (counts[a] != counts[b]) {
+            return counts[a] > counts[b];
+        }
+        return Double.compare(Double.longBitsToDouble(keys[a]), Double.longBitsToDouble(keys[b])) < 0;
+    }
+    
+    public static final class Entry {
+        
+        private final double value;
+        private final int count;
+        
+        Entry(double value, int count) {
+            this.value = value;
+            this.count = count;
+        }
+        
+        public double getValue() {
+            return value;
+        }
+        
+        public int getCount() {
+            return count;
+        }
+    }
+}
@@ -7,6 +7,13 @@ import java.awt.event.*;
 import java.io.*;
 import java.text.DecimalFormat;
 import java.util.*;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Lukasz Golinski
@@ -14,31 +21,51 @@ import java.util.*;
 public class MainFrame extends JFrame {
     
     private DataModel currentModel;
-    private StatisticsEngine statsEngine;
+    private ColumnAnalysis currentAnalysis;
+    private AnalysisCache analysisCache;
+    private ExecutorService analysisExecutor;
+    private AtomicInteger analysisGeneration;
     private CSVLoader csvLoader;
     
     private JComboBox<String> columnSelector;
     private JLabel fileNameLabel;
     private JLabel statusLabel;
+    private JProgressBar progressBar;
     
     private VisualizationPanel visualPanel;
     private ResultsPanel resultsPanel;
     private DataTablePanel dataTablePanel;
     private MovingAveragePanel movingAvgPanel;
+    private ValueCountsPanel valueCountsPanel;
+    private ColumnSummaryPanel columnSummaryPanel;
+    private CorrelationPanel correlationPanel;
     
     private JTabbedPane mainTabbedPane;
     
     private JComboBox<String> chartTypeCombo;
+    private JComboBox<String> xAxisSelector;
+    private JComboBox<String> trendCombo;
+    private String chartColumn;
+    private ColumnView chartValues;
+    private int trendRequest;
     
     private static final Color HEADER_BG = new Color(44, 62, 80);
     private static final Color ACCENT_COLOR = new Color(52, 152, 219);
     private static final Color SUCCESS_COLOR = new Color(46, 204, 113);
+    private static final String INDEX_AXIS = "Index";
     
     public MainFrame() {
         super("Data Analyzer Pro - Numerical CSV Analysis Tool");
         
         currentModel = new DataModel();
-        statsEngine = new StatisticsEngine();
+        chartValues = ColumnView.EMPTY;
+        analysisCache = new AnalysisCache();
+        analysisGeneration = new AtomicInteger();
+        analysisExecutor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "column-analysis");
+            thread.setDaemon(true);
+            return thread;
+        });
         csvLoader = new CSVLoader();
         
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -76,6 +103,19 @@ public class MainFrame extends JFrame {
         });
         mainTabbedPane.addTab("Moving Averages", movingAvgPanel);
         
+        valueCountsPanel = new ValueCountsPanel();
+        mainTabbedPane.addTab("Value Counts", valueCountsPanel);
+        
+        columnSummaryPanel = new ColumnSummaryPanel();
+        columnSummaryPanel.setColumnListener(column -> {
+            columnSelector.setSelectedItem(column);
+            mainTabbedPane.setSelectedIndex(0);
+        });
+        mainTabbedPane.addTab("All Columns", columnSummaryPanel);
+        
+        correlationPanel = new CorrelationPanel();
+        mainTabbedPane.addTab("Correlations", correlationPanel);
+        
         JPanel helpPanel = createHelpPanel();
         mainTabbedPane.addTab("Help", helpPanel);
         
@@ -178,6 +218,7 @@ public class MainFrame extends JFrame {
             BorderFactory.createEmptyBorder(10, 10, 10, 5),
             BorderFactory.createLineBorder(new Color(200, 200, 200))
         ));
+        chartContainer.add(createChartControls(), BorderLayout.NORTH);
         chartContainer.add(visualPanel, BorderLayout.CENTER);
         
         resultsPanel = new ResultsPanel();
@@ -192,6 +233,30 @@ public class MainFrame extends JFrame {
         return splitPane;
     }
     
+    private JPanel createChartControls() {
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 4));
+        controls.setBackground(Color.WHITE);
+        
+        controls.add(new JLabel("X Axis:"));
+        xAxisSelector = new JComboBox<>(new String[]{INDEX_AXIS});
+        xAxisSelector.setPreferredSize(new Dimension(150, 26));
+        xAxisSelector.addActionListener(e -> {
+            Object selected = xAxisSelector.getSelectedItem();
+            if (selected != null && !INDEX_AXIS.equals(selected)) {
+                chartTypeCombo.setSelectedItem("Scatter Plot");
+            }
+            updateRegression();
+        });
+        controls.add(xAxisSelector);
+        
+        controls.add(new JLabel("Trend Line:"));
+        trendCombo = new JComboBox<>(new String[]{"None", "Linear", "Quadratic", "Cubic"});
+        trendCombo.addActionListener(e -> updateRegression());
+        controls.add(trendCombo);
+        
+        return controls;
+    }
+    
     private JPanel createHelpPanel() {
         JPanel helpPanel = new JPanel(new BorderLayout(20, 20));
         helpPanel.setBackground(Color.WHITE);
@@ -217,6 +282,8 @@ public class MainFrame extends JFrame {
             "<li>Supports CSV, TSV, and TXT files with numerical data</li>" +
             "<li>Automatic delimiter detection (comma, semicolon, tab, pipe)</li>" +
             "<li>Non-numeric values are automatically filtered</li>" +
+            "<li>Enable <b>File &gt; Comma Decimal Separator</b> for numbers written as 1.234,56</li>" +
+            "<li>Enable <b>File &gt; Store Columns on Disk</b> for files larger than available memory</li>" +
             "</ul>" +
             
             "<h3 style='color: #3498db;'>Statistical Analysis</h3>" +
@@ -227,6 +294,7 @@ public class MainFrame extends JFrame {
             "<li><b>Dispersion:</b> Variance, Standard Deviation, Coefficient of Variation</li>" +
             "<li><b>Quartiles:</b> Q1, Q2, Q3, IQR, Percentiles</li>" +
             "<li><b>Distribution Shape:</b> Skewness, Kurtosis with interpretation</li>" +
+            "<li>Enable <b>View &gt; Approximate Quantiles</b> to estimate the median and percentiles of very large columns without sorting them; estimates are marked with \u2248</li>" +
             "</ul>" +
             
             "<h3 style='color: #3498db;'>Visualization</h3>" +
@@ -237,16 +305,40 @@ public class MainFrame extends JFrame {
             "<li><b>Histogram:</b> Shows frequency distribution</li>" +
             "<li><b>Scatter Plot:</b> Displays data point distribution</li>" +
             "</ul>" +
+            "<p>Choose another column under <b>X Axis</b> to plot the analyzed column against it " +
+            "in the scatter plot. <b>Trend Line</b> fits a least-squares line or polynomial to the " +
+            "plotted points and shows its equation, R\u00b2, residual standard error and point count.</p>" +
             
             "<h3 style='color: #3498db;'>Moving Averages</h3>" +
             "<p>The Moving Averages tab provides:</p>" +
             "<ul>" +
             "<li><b>Simple Moving Average (SMA):</b> Configurable window size</li>" +
             "<li><b>Exponential Moving Average (EMA):</b> Adjustable smoothing factor</li>" +
+            "<li><b>Double and Triple EMA (DEMA, TEMA):</b> EMA variants that lag a trend less</li>" +
             "<li><b>Weighted Moving Average (WMA):</b> Linear weighted calculation</li>" +
             "<li><b>4-Point Moving Average:</b> Fixed window for trend analysis</li>" +
+            "<li><b>Rolling Median and Percentile:</b> Spike-resistant smoothing over a window</li>" +
+            "<li><b>Bollinger Bands:</b> Moving average with bands two standard deviations wide</li>" +
+            "<li><b>Rolling Statistics:</b> Standard deviation, minimum, maximum and sum of each window</li>" +
+            "<li><b>Compare Settings:</b> Ranks SMA, WMA and EMA settings by the mean absolute error of " +
+            "one-step-ahead forecasts: the average of the values before each point against the point</li>" +
             "</ul>" +
             
+            "<h3 style='color: #3498db;'>Value Counts</h3>" +
+            "<p>The Value Counts tab lists the most frequent values of the analyzed column " +
+            "with their counts and percentages, along with the number of distinct values.</p>" +
+            
+            "<h3 style='color: #3498db;'>All Columns</h3>" +
+            "<p>After a file is loaded every column is analyzed in the background. The All Columns " +
+            "tab shows the key statistics of each column side by side; double-click a row to open " +
+            "that column. Columns already analyzed open instantly.</p>" +
+            
+            "<h3 style='color: #3498db;'>Correlations</h3>" +
+            "<p>The Correlations tab computes the Pearson or Spearman correlation of every pair " +
+            "of columns and shows the matrix as a heatmap, red for positive and blue for negative. " +
+            "Each pair uses the rows where both columns have a value; hover a cell to see its " +
+            "coefficient, covariance and row count.</p>" +
+            
             "<h3 style='color: #3498db;'>Keyboard Shortcuts</h3>" +
             "<ul>" +
             "<li><b>Ctrl+O:</b> Open file</li>" +
@@ -290,7 +382,17 @@ public class MainFrame extends JFrame {
         versionLabel.setFont(new Font("SansSerif", Font.ITALIC, 10));
         versionLabel.setForeground(new Color(150, 150, 150));
         
+        progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
+        progressBar.setPreferredSize(new Dimension(120, 12));
+        progressBar.setVisible(false);
+        
+        JPanel progressPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0));
+        progressPanel.setOpaque(false);
+        progressPanel.add(progressBar);
+        
         statusBar.add(statusLabel, BorderLayout.WEST);
+        statusBar.add(progressPanel, BorderLayout.CENTER);
         statusBar.add(versionLabel, BorderLayout.EAST);
         
         return statusBar;
@@ -315,6 +417,18 @@ public class MainFrame extends JFrame {
         
         fileMenu.addSeparator();
         
+        JCheckBoxMenuItem decimalCommaItem = new JCheckBoxMenuItem("Comma Decimal Separator");
+        decimalCommaItem.addActionListener(e -> 
+            csvLoader.setNumberLocale(decimalCommaItem.isSelected() ? Locale.GERMANY : null));
+        fileMenu.add(decimalCommaItem);
+        
+        JCheckBoxMenuItem diskColumnsItem = new JCheckBoxMenuItem("Store Columns on Disk");
+        diskColumnsItem.addActionListener(e -> 
+            csvLoader.setColumnStorage(diskColumnsItem.isSelected() ? ColumnStorage.MAPPED : ColumnStorage.HEAP));
+        fileMenu.add(diskColumnsItem);
+        
+        fileMenu.addSeparator();
+        
         JMenuItem clearItem = new JMenuItem("Clear All");
         clearItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_N, InputEvent.CTRL_DOWN_MASK));
         clearItem.addActionListener(e -> clearAllData());
@@ -341,12 +455,34 @@ public class MainFrame extends JFrame {
         maTabItem.addActionListener(e -> mainTabbedPane.setSelectedIndex(2));
         viewMenu.add(maTabItem);
         
+        JMenuItem countsTabItem = new JMenuItem("Value Counts Tab");
+        countsTabItem.addActionListener(e -> mainTabbedPane.setSelectedIndex(3));
+        viewMenu.add(countsTabItem);
+        
+        JMenuItem summaryTabItem = new JMenuItem("All Columns Tab");
+        summaryTabItem.addActionListener(e -> mainTabbedPane.setSelectedIndex(4));
+        viewMenu.add(summaryTabItem);
+        
+        JMenuItem correlationTabItem = new JMenuItem("Correlations Tab");
+        correlationTabItem.addActionListener(e -> mainTabbedPane.setSelectedIndex(5));
+        viewMenu.add(correlationTabItem);
+        
+        viewMenu.addSeparator();
+        
+        JCheckBoxMenuItem approximateItem = new JCheckBoxMenuItem("Approximate Quantiles");
+        approximateItem.addActionListener(e -> {
+            analysisCache.setApproximateQuantiles(approximateItem.isSelected());
+            analyzeSelectedColumn();
+            analyzeAllColumns();
+        });
+        viewMenu.add(approximateItem);
+        
         JMenu helpMenu = new JMenu("Help");
         helpMenu.setMnemonic(KeyEvent.VK_H);
         
         JMenuItem helpItem = new JMenuItem("User Guide");
         helpItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F1, 0));
-        helpItem.addActionListener(e -> mainTabbedPane.setSelectedIndex(3));
+        helpItem.addActionListener(e -> mainTabbedPane.setSelectedIndex(6));
         helpMenu.add(helpItem);
         
         helpMenu.addSeparator();
@@ -399,7 +535,11 @@ public class MainFrame extends JFrame {
                 @Override
                 protected void done() {
                     try {
-                        currentModel = get();
+                        DataModel loadedModel = get();
+                        if (loadedModel.hasData()) {
+                            releaseCurrentModel();
+                        }
+                        currentModel = loadedModel;
                         processLoadedData();
                     } catch (Exception ex) {
                         JOptionPane.showMessageDialog(MainFrame.this,
@@ -434,44 +574,257 @@ public class MainFrame extends JFrame {
             columnSelector.addItem(col);
         }
         
+        xAxisSelector.removeAllItems();
+        xAxisSelector.addItem(INDEX_AXIS);
+        for (String col : currentModel.getColumnNames()) {
+            xAxisSelector.addItem(col);
+        }
+        
         dataTablePanel.loadData(currentModel);
+        correlationPanel.setData(currentModel);
         
         if (columnSelector.getItemCount() > 0) {
             columnSelector.setSelectedIndex(0);
         }
         
+        analyzeAllColumns();
+        
         statusLabel.setText("Loaded: " + currentModel.getSourceFileName() + 
                            " | " + currentModel.getColumnCount() + " columns | " +
                            currentModel.getTotalRecords() + " records");
     }
     
+    /*
+     * Analyzes the selected column on the analysis thread with an engine of
+     * its own and applies the result on the event thread. Every call starts a
+     * new generation; work queued or finished for an older one is skipped, so
+     * scrolling through the columns only shows the last selection. Meanwhile
+     * the background pass holds back the columns it has not started. The
+     * engine is only used on the analysis thread until it is handed to the
+     * Value Counts tab, and only by that tab's counts after that; everything
+     * else the event thread shows comes from the ColumnAnalysis and the
+     * values.
+     */
     private void analyzeSelectedColumn() {
         String selectedColumn = (String) columnSelector.getSelectedItem();
+        int generation = analysisGeneration.incrementAndGet();
         
         if (selectedColumn == null || !currentModel.hasData()) {
+            progressBar.setVisible(false);
             return;
         }
         
-        double[] columnData = currentModel.getColumnAsArray(selectedColumn);
+        DataModel model = currentModel;
+        ColumnView columnData = model.getColumn(selectedColumn);
         
-        if (columnData.length == 0) {
+        if (columnData.validCount() == 0) {
+            progressBar.setVisible(false);
             statusLabel.setText("No numeric data in column: " + selectedColumn);
             return;
         }
         
-        statsEngine.loadData(columnData);
+        boolean approximate = analysisCache.usesApproximateQuantiles();
+        
+        statusLabel.setText("Analyzing: " + selectedColumn + "...");
+        progressBar.setVisible(true);
+        
+        analysisExecutor.execute(() -> {
+            if (generation != analysisGeneration.get()) {
+                return;
+            }
+            
+            analysisCache.beginPriority();
+            try {
+                StatisticsEngine engine = new StatisticsEngine();
+                engine.setApproximateQuantiles(approximate);
+                engine.loadData(columnData, model.getColumnStatistics(selectedColumn));
+                
+                ColumnAnalysis analysis = analysisCache.get(selectedColumn);
+                if (analysis == null) {
+                    analysis = analyzeInTiers(generation, selectedColumn, engine);
+                    if (analysis == null) {
+                        return;
+                    }
+                    analysisCache.put(analysis);
+                }
+                
+                ColumnView values = engine.getValues();
+                
+                ColumnAnalysis result = analysis;
+                SwingUtilities.invokeLater(() -> applyAnalysis(generation, selectedColumn, engine, values, result));
+            } catch (RuntimeException ex) {
+                SwingUtilities.invokeLater(() -> {
+                    if (generation == analysisGeneration.get()) {
+                        progressBar.setVisible(false);
+                        statusLabel.setText("Error analyzing column: " + ex.getMessage());
+                    }
+                });
+            } finally {
+                analysisCache.endPriority();
+            }
+        });
+    }
+    
+    /*
+     * Runs the full analysis one tier at a time and shows each tier in the
+     * Analysis tab as soon as it is ready. Returns null when a newer
+     * selection has superseded this one.
+     */
+    private ColumnAnalysis analyzeInTiers(int generation, String selectedColumn, StatisticsEngine engine) {
+        Map<String, Double> results = new LinkedHashMap<>();
+        int count = engine.getCount();
+        
+        for (int tier = 0; tier < 3; tier++) {
+            if (generation != analysisGeneration.get()) {
+                return null;
+            }
+            
+            Map<String, Double> tierResults = tier == 0 ? engine.getBasicAnalysis()
+                                            : tier == 1 ? engine.getMomentAnalysis()
+                                            : engine.getOrderAnalysis();
+            results.putAll(tierResults);
+            
+            Set<String> estimates = new HashSet<>();
+            for (String statistic : tierResults.keySet()) {
+                if (engine.isApproximate(statistic)) {
+                    estimates.add(statistic);
+                }
+            }
+            
+            boolean first = tier == 0;
+            SwingUtilities.invokeLater(() -> {
+                if (generation == analysisGeneration.get()) {
+                    if (first) {
+                        resultsPanel.beginResults(selectedColumn, count);
+                    }
+                    resultsPanel.updateResults(tierResults, estimates::contains);
+                }
+            });
+        }
+        
+        return ColumnAnalysis.of(selectedColumn, engine, StatisticsEngine.inAnalysisOrder(results));
+    }
+    
+    private void applyAnalysis(int generation, String selectedColumn, StatisticsEngine engine,
+                               ColumnView values, ColumnAnalysis analysis) {
+        if (generation != analysisGeneration.get()) {
+            return;
+        }
+        
+        currentAnalysis = analysis;
+        progressBar.setVisible(false);
         
-        resultsPanel.displayResults(statsEngine, selectedColumn);
+        resultsPanel.displayResults(analysis);
         
-        visualPanel.setData(columnData);
+        chartColumn = selectedColumn;
+        chartValues = values;
+        visualPanel.setData(values);
         visualPanel.setChartTitle(selectedColumn + " - Data Visualization");
-        visualPanel.setAxisLabels("Index", "Value");
+        updateRegression();
         
-        movingAvgPanel.setData(columnData);
+        movingAvgPanel.setData(values);
+        
+        valueCountsPanel.setData(engine, selectedColumn);
+        
+        if (analysisCache.get(selectedColumn) == analysis) {
+            columnSummaryPanel.updateColumn(analysis);
+        }
         
         dataTablePanel.setHighlightColumn(selectedColumn);
         
-        statusLabel.setText("Analyzing: " + selectedColumn + " (" + columnData.length + " values)");
+        statusLabel.setText("Analyzing: " + selectedColumn + " (" + analysis.getCount() + " values)");
+    }
+    
+    /*
+     * Fills the analysis cache for every column of the current model on the
+     * cache's own pool and adds each result to the All Columns tab as it
+     * arrives. Results from a pass that was cleared in the meantime are
+     * dropped.
+     */
+    private void analyzeAllColumns() {
+        DataModel model = currentModel;
+        columnSummaryPanel.setColumns(model);
+        
+        SwingWorker<Void, ColumnAnalysis> worker = new SwingWorker<>() {
+            @Override
+            protected Void doInBackground() {
+                analysisCache.analyzeAll(model, analysis -> publish(analysis));
+                return null;
+            }
+            
+            @Override
+            protected void process(List<ColumnAnalysis> results) {
+                for (ColumnAnalysis analysis : results) {
+                    if (analysisCache.get(analysis.getColumnName()) == analysis) {
+                        columnSummaryPanel.updateColumn(analysis);
+                    }
+                }
+            }
+        };
+        
+        for (String column : model.getColumnNames()) {
+            ColumnAnalysis analysis = analysisCache.get(column);
+            if (analysis != null) {
+                columnSummaryPanel.updateColumn(analysis);
+            }
+        }
+        
+        worker.execute();
+    }
+    
+    /*
+     * Pairs the charted column with the chosen x axis and fits the chosen
+     * trend on the analysis thread. A fit that arrives after the column, the
+     * axis or the trend has changed again is dropped.
+     */
+    private void updateRegression() {
+        int request = ++trendRequest;
+        String xColumn = (String) xAxisSelector.getSelectedItem();
+        int degree = trendCombo.getSelectedIndex();
+        boolean againstIndex = xColumn == null || INDEX_AXIS.equals(xColumn);
+        
+        visualPanel.setFitLine(null);
+        
+        if (chartColumn == null || currentAnalysis == null) {
+            return;
+        }
+        
+        DataModel model = currentModel;
+        ColumnView values = chartValues;
+        double mean = currentAnalysis.get("Mean");
+        String column = chartColumn;
+        
+        if (againstIndex) {
+            visualPanel.setPairedData(null, null);
+            visualPanel.setAxisLabels("Index", "Value");
+        } else {
+            visualPanel.setPairedData(model.getColumn(xColumn), model.getColumn(column));
+            visualPanel.setAxisLabels(xColumn, column);
+        }
+        
+        if (degree <= 0) {
+            return;
+        }
+        
+        int generation = analysisGeneration.get();
+        
+        analysisExecutor.execute(() -> {
+            if (generation != analysisGeneration.get()) {
+                return;
+            }
+            
+            RegressionFit fit = againstIndex ? RegressionAccumulator.ofIndex(values, degree, mean, true).fit()
+                              : RegressionAccumulator.of(model, xColumn, column, degree, true).fit();
+            
+            SwingUtilities.invokeLater(() -> {
+                if (generation == analysisGeneration.get() && request == trendRequest) {
+                    visualPanel.setFitLine(fit);
+                    statusLabel.setText(String.format("Trend of %s against %s: %s, R\u00b2 = %.4f, residual SE = %.4g",
+                                                      column, againstIndex ? "index" : xColumn, fit.getEquation(),
+                                                      fit.getRSquared(), fit.getResidualStandardError()));
+                }
+            });
+        });
     }
     
     private void updateChartType() {
@@ -495,8 +848,15 @@ public class MainFrame extends JFrame {
         }
     }
     
+    /*
+     * Writes the cached analysis of the column on display, so exporting
+     * computes nothing beyond the first few moving averages.
+     */
     private void exportResults() {
-        if (!statsEngine.hasData()) {
+        ColumnAnalysis analysis = currentAnalysis;
+        ColumnView values = chartValues;
+        
+        if (analysis == null) {
             JOptionPane.showMessageDialog(this,
                 "No analysis results to export.\nPlease load data and select a column first.",
                 "No Results",
@@ -521,7 +881,7 @@ public class MainFrame extends JFrame {
                 writer.println("Author: Lukasz Golinski");
                 writer.println();
                 writer.println("Source File: " + currentModel.getSourceFileName());
-                writer.println("Column Analyzed: " + columnSelector.getSelectedItem());
+                writer.println("Column Analyzed: " + analysis.getColumnName());
                 writer.println("Generated: " + new java.util.Date());
                 writer.println();
                 writer.println("----------------------------------------");
@@ -530,11 +890,12 @@ public class MainFrame extends JFrame {
                 writer.println();
                 
                 DecimalFormat df = new DecimalFormat("#,##0.######");
-                Map<String, Double> results = statsEngine.getFullAnalysis();
+                Map<String, Double> results = analysis.getResults();
                 
                 for (Map.Entry<String, Double> entry : results.entrySet()) {
-                    String formatted = String.format("%-25s : %s", 
+                    String formatted = String.format("%-25s : %s%s", 
                                                      entry.getKey(), 
+                                                     analysis.isApproximate(entry.getKey()) ? "~" : "",
                                                      df.format(entry.getValue()));
                     writer.println(formatted);
                 }
@@ -544,8 +905,8 @@ public class MainFrame extends JFrame {
                 writer.println("         INTERPRETATION");
                 writer.println("----------------------------------------");
                 writer.println();
-                writer.println("Skewness: " + statsEngine.getSkewnessInterpretation());
-                writer.println("Kurtosis: " + statsEngine.getKurtosisInterpretation());
+                writer.println("Skewness: " + analysis.getSkewnessInterpretation());
+                writer.println("Kurtosis: " + analysis.getKurtosisInterpretation());
                 
                 writer.println();
                 writer.println("----------------------------------------");
@@ -553,13 +914,14 @@ public class MainFrame extends JFrame {
                 writer.println("----------------------------------------");
                 writer.println();
                 
-                double[] ma4 = statsEngine.getFourPointMovingAverage();
-                writer.println("4-Point Moving Average values: " + ma4.length);
-                if (ma4.length > 0) {
+                int averages = Math.max(0, values.size() - 3);
+                writer.println("4-Point Moving Average values: " + averages);
+                if (averages > 0) {
                     writer.print("First 10: ");
-                    for (int i = 0; i < Math.min(10, ma4.length); i++) {
-                        writer.print(df.format(ma4[i]));
-                        if (i < Math.min(9, ma4.length - 1)) writer.print(", ");
+                    for (int i = 0; i < Math.min(10, averages); i++) {
+                        double sum = values.get(i) + values.get(i + 1) + values.get(i + 2) + values.get(i + 3);
+                        writer.print(df.format(sum / 4));
+                        if (i < Math.min(9, averages - 1)) writer.print(", ");
                     }
                     writer.println();
                 }
@@ -575,7 +937,7 @@ public class MainFrame extends JFrame {
                     JOptionPane.INFORMATION_MESSAGE);
                 
                 statusLabel.setText("Results exported to: " + outputFile.getName());
-                
+            
             } catch (IOException ex) {
                 JOptionPane.showMessageDialog(this,
                     "Error exporting results: " + ex.getMessage(),
@@ -593,21 +955,73 @@ public class MainFrame extends JFrame {
             JOptionPane.QUESTION_MESSAGE);
         
         if (confirm == JOptionPane.YES_OPTION) {
-            currentModel.clearData();
-            statsEngine = new StatisticsEngine();
+            releaseCurrentModel();
             
             columnSelector.removeAllItems();
+            xAxisSelector.removeAllItems();
+            xAxisSelector.addItem(INDEX_AXIS);
             fileNameLabel.setText("No file loaded");
             
-            visualPanel.clearChart();
-            resultsPanel.clearResults();
-            dataTablePanel.clearData();
-            movingAvgPanel.clearData();
-            
             statusLabel.setText("All data cleared - Ready to load new file");
         }
     }
     
+    /*
+     * Drops every view of the current model and replaces it with an empty
+     * one, then frees its column storage, which may be off-heap, without
+     * holding up the event thread. The release is queued on the analysis
+     * thread, which runs tasks in order, so it follows the column analysis
+     * in progress; there it waits for the columns the background pass is
+     * still working on, the moving-average comparison, the correlation
+     * matrix and the value counts.
+     */
+    private void releaseCurrentModel() {
+        analysisGeneration.incrementAndGet();
+        progressBar.setVisible(false);
+        int pass = analysisCache.clear();
+        Future<?> comparison = movingAvgPanel.getPendingWork();
+        Future<?> correlation = correlationPanel.getPendingWork();
+        Future<?> counts = valueCountsPanel.getPendingWork();
+        
+        currentAnalysis = null;
+        chartColumn = null;
+        chartValues = ColumnView.EMPTY;
+        visualPanel.clearChart();
+        resultsPanel.clearResults();
+        dataTablePanel.clearData();
+        movingAvgPanel.clearData();
+        valueCountsPanel.clearData();
+        columnSummaryPanel.clearData();
+        correlationPanel.clearData();
+        
+        DataModel model = currentModel;
+        currentModel = new DataModel();
+        analysisExecutor.execute(() -> {
+            analysisCache.awaitPass(pass);
+            awaitReader(comparison);
+            awaitReader(correlation);
+            awaitReader(counts);
+            model.clearData();
+        });
+    }
+    
+    /*
+     * Waits for work that may still read a released model. How it ended
+     * does not matter any more.
+     */
+    private static void awaitReader(Future<?> work) {
+        if (work == null) {
+            return;
+        }
+        try {
+            work.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException ex) {
+            /* Superseded; the error no longer matters */
+        }
+    }
+    
     private void showAboutDialog() {
         String message = 
             "Data Analyzer Pro\n" +
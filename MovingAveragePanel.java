@@ -6,6 +6,9 @@ import javax.swing.table.*;
 import java.awt.*;
 import java.text.DecimalFormat;
 import java.util.*;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * @author Lukasz Golinski
@@ -14,19 +17,25 @@ public class MovingAveragePanel extends JPanel {
     
     private StatisticsEngine engine;
     private JTable maTable;
-    private DefaultTableModel tableModel;
+    private MovingAverageTableModel tableModel;
     private JSpinner windowSizeSpinner;
     private JSpinner emaSmoothingSpinner;
+    private JSpinner percentileSpinner;
     private JComboBox<String> maTypeCombo;
     private JLabel summaryLabel;
     private JButton calculateButton;
+    private JButton compareButton;
+    private JTextField sweepWindowsField;
+    private JTextField sweepAlphasField;
+    private MovingAverageSweep sweep;
+    private SwingWorker<List<MovingAverageSweep.Result>, Void> comparison;
     private DecimalFormat formatter;
     
-    private double[] originalData;
+    private ColumnView originalData;
     private double[] currentMovingAverage;
     
     public interface MovingAverageListener {
-        void onMovingAverageCalculated(double[] originalData, double[] maData, String maType, int window);
+        void onMovingAverageCalculated(ColumnView originalData, double[] maData, String maType, int window);
     }
     
     private MovingAverageListener listener;
@@ -34,7 +43,7 @@ public class MovingAveragePanel extends JPanel {
     public MovingAveragePanel() {
         engine = new StatisticsEngine();
         formatter = new DecimalFormat("#,##0.######");
-        originalData = new double[0];
+        originalData = ColumnView.EMPTY;
         currentMovingAverage = new double[0];
         
         setLayout(new BorderLayout(8, 8));
@@ -62,8 +71,17 @@ public class MovingAveragePanel extends JPanel {
         maTypeCombo = new JComboBox<>(new String[]{
             "Simple Moving Average (SMA)",
             "Exponential Moving Average (EMA)",
+            "Double Exponential Moving Average (DEMA)",
+            "Triple Exponential Moving Average (TEMA)",
             "Weighted Moving Average (WMA)",
-            "4-Point Moving Average"
+            "4-Point Moving Average",
+            "Rolling Median",
+            "Rolling Percentile",
+            "Bollinger Bands (2σ)",
+            "Rolling Standard Deviation",
+            "Rolling Minimum",
+            "Rolling Maximum",
+            "Rolling Sum"
         });
         maTypeCombo.setPreferredSize(new Dimension(200, 25));
         maTypeCombo.addActionListener(e -> updateControlVisibility());
@@ -73,9 +91,9 @@ public class MovingAveragePanel extends JPanel {
         windowLabel.setFont(new Font("SansSerif", Font.PLAIN, 12));
         controlsPanel.add(windowLabel);
         
-        SpinnerNumberModel windowModel = new SpinnerNumberModel(4, 2, 100, 1);
+        SpinnerNumberModel windowModel = new SpinnerNumberModel(4, 2, 10000000, 1);
         windowSizeSpinner = new JSpinner(windowModel);
-        windowSizeSpinner.setPreferredSize(new Dimension(60, 25));
+        windowSizeSpinner.setPreferredSize(new Dimension(90, 25));
         controlsPanel.add(windowSizeSpinner);
         
         JLabel smoothLabel = new JLabel("EMA Smoothing:");
@@ -89,6 +107,15 @@ public class MovingAveragePanel extends JPanel {
         emaSmoothingSpinner.setEditor(editor);
         controlsPanel.add(emaSmoothingSpinner);
         
+        JLabel percentileLabel = new JLabel("Percentile:");
+        percentileLabel.setFont(new Font("SansSerif", Font.PLAIN, 12));
+        controlsPanel.add(percentileLabel);
+        
+        SpinnerNumberModel percentileModel = new SpinnerNumberModel(90.0, 0.0, 100.0, 5.0);
+        percentileSpinner = new JSpinner(percentileModel);
+        percentileSpinner.setPreferredSize(new Dimension(70, 25));
+        controlsPanel.add(percentileSpinner);
+        
         calculateButton = new JButton("Calculate");
         calculateButton.setFont(new Font("SansSerif", Font.BOLD, 12));
         calculateButton.setBackground(new Color(52, 152, 219));
@@ -98,18 +125,24 @@ public class MovingAveragePanel extends JPanel {
         calculateButton.addActionListener(e -> calculateMovingAverage());
         controlsPanel.add(calculateButton);
         
+        compareButton = new JButton("Compare Settings...");
+        compareButton.setFont(new Font("SansSerif", Font.PLAIN, 12));
+        compareButton.setFocusPainted(false);
+        compareButton.setToolTipText("<html>Ranks settings by the MAE of one-step-ahead forecasts: the average of the<br>" +
+                                     "values before each point against the point. The MAE shown for a single<br>" +
+                                     "average compares it with the value it is lined up with in the table.</html>");
+        compareButton.addActionListener(e -> compareSettings());
+        controlsPanel.add(compareButton);
+        
+        sweepWindowsField = new JTextField("3, 5, 10, 20, 50, 100", 20);
+        sweepAlphasField = new JTextField("0.05, 0.1, 0.2, 0.3, 0.5", 20);
+        
         topPanel.add(titleLabel, BorderLayout.NORTH);
         topPanel.add(controlsPanel, BorderLayout.CENTER);
         
         add(topPanel, BorderLayout.NORTH);
         
-        String[] columns = {"Index", "Original Value", "Moving Average", "Difference", "% Change"};
-        tableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        tableModel = new MovingAverageTableModel();
         
         maTable = new JTable(tableModel);
         maTable.setFont(new Font("SansSerif", Font.PLAIN, 12));
@@ -124,9 +157,7 @@ public class MovingAveragePanel extends JPanel {
         
         maTable.setDefaultRenderer(Object.class, new MovingAverageCellRenderer());
         
-        for (int i = 0; i < maTable.getColumnCount(); i++) {
-            maTable.getColumnModel().getColumn(i).setPreferredWidth(100);
-        }
+        setColumnWidths();
         
         JScrollPane scrollPane = new JScrollPane(maTable);
         scrollPane.setBorder(BorderFactory.createLineBorder(new Color(200, 200, 200)));
@@ -149,9 +180,17 @@ public class MovingAveragePanel extends JPanel {
         updateControlVisibility();
     }
     
+    private void setColumnWidths() {
+        for (int i = 0; i < maTable.getColumnCount(); i++) {
+            maTable.getColumnModel().getColumn(i).setPreferredWidth(100);
+        }
+    }
+    
     private void updateControlVisibility() {
         String selected = (String) maTypeCombo.getSelectedItem();
         
+        percentileSpinner.setEnabled(selected.contains("Percentile"));
+        
         if (selected.contains("EMA")) {
             emaSmoothingSpinner.setEnabled(true);
             windowSizeSpinner.setEnabled(false);
@@ -166,15 +205,21 @@ public class MovingAveragePanel extends JPanel {
     }
     
     public void setData(double[] data) {
-        this.originalData = data != null ? Arrays.copyOf(data, data.length) : new double[0];
+        setData(data != null ? ColumnView.wrap(Arrays.copyOf(data, data.length)) : null);
+    }
+    
+    public void setData(ColumnView data) {
+        this.originalData = data != null ? data : ColumnView.EMPTY;
         engine.loadData(originalData);
-        tableModel.setRowCount(0);
+        tableModel.clear();
         currentMovingAverage = new double[0];
-        summaryLabel.setText("Data loaded (" + originalData.length + " values). Select type and calculate.");
+        dropSweep();
+        compareButton.setEnabled(true);
+        summaryLabel.setText("Data loaded (" + originalData.size() + " values). Select type and calculate.");
     }
     
     private void calculateMovingAverage() {
-        if (originalData.length == 0) {
+        if (originalData.size() == 0) {
             JOptionPane.showMessageDialog(this, 
                 "No data loaded. Please load a CSV file first.",
                 "No Data",
@@ -187,84 +232,87 @@ public class MovingAveragePanel extends JPanel {
         double smoothing = (Double) emaSmoothingSpinner.getValue();
         
         double[] maValues;
+        RollingWindow.Bands bands = null;
         
-        if (maType.contains("EMA")) {
+        if (maType.contains("DEMA")) {
+            maValues = engine.getDoubleExponentialMovingAverage(smoothing);
+        } else if (maType.contains("TEMA")) {
+            maValues = engine.getTripleExponentialMovingAverage(smoothing);
+        } else if (maType.contains("EMA")) {
             maValues = engine.getExponentialMovingAverage(smoothing);
         } else if (maType.contains("WMA")) {
             maValues = engine.getWeightedMovingAverage(windowSize);
         } else if (maType.contains("4-Point")) {
             maValues = engine.getFourPointMovingAverage();
+        } else if (maType.contains("Median")) {
+            maValues = engine.getRollingMedian(windowSize);
+        } else if (maType.contains("Percentile")) {
+            maValues = engine.getRollingPercentile(windowSize, (Double) percentileSpinner.getValue());
+        } else if (maType.contains("Bollinger")) {
+            bands = engine.getBollingerBands(windowSize, 2.0);
+            maValues = bands.getMiddle();
+        } else if (maType.contains("Standard Deviation")) {
+            maValues = engine.getRollingStandardDeviation(windowSize);
+        } else if (maType.contains("Minimum")) {
+            maValues = engine.getRollingMinimum(windowSize);
+        } else if (maType.contains("Maximum")) {
+            maValues = engine.getRollingMaximum(windowSize);
+        } else if (maType.contains("Rolling Sum")) {
+            maValues = engine.getRollingSum(windowSize);
         } else {
             maValues = engine.getMovingAverage(windowSize);
         }
         
         currentMovingAverage = maValues;
         
-        populateTable(maValues, maType, windowSize);
+        populateTable(maValues, bands, maType, windowSize);
         
         if (listener != null) {
             listener.onMovingAverageCalculated(originalData, maValues, maType, windowSize);
         }
     }
     
-    private void populateTable(double[] maValues, String maType, int windowSize) {
-        tableModel.setRowCount(0);
-        
+    /*
+     * The table reads its cells from the result arrays as they are painted,
+     * so a series of millions of values does not become millions of rows of
+     * strings; only the summary walks every value.
+     */
+    private void populateTable(double[] maValues, RollingWindow.Bands bands, String maType, int windowSize) {
         int offset = 0;
-        if (maType.contains("SMA") || maType.contains("WMA") || maType.contains("4-Point")) {
-            offset = (originalData.length - maValues.length) / 2;
-            if (maType.contains("4-Point")) {
-                offset = 1;
-            } else {
-                offset = windowSize / 2;
-            }
+        if (maType.contains("4-Point")) {
+            offset = 1;
+        } else if (!maType.contains("EMA")) {
+            offset = windowSize / 2;
         }
         
+        boolean comparable = !maType.contains("Standard Deviation") && !maType.contains("Rolling Sum");
+        
         double sumDiff = 0;
         double sumAbsDiff = 0;
         int compareCount = 0;
         
-        for (int i = 0; i < originalData.length; i++) {
-            String indexStr = String.valueOf(i + 1);
-            String originalStr = formatter.format(originalData[i]);
-            String maStr = "";
-            String diffStr = "";
-            String pctChangeStr = "";
-            
-            int maIndex = -1;
-            
-            if (maType.contains("EMA")) {
-                maIndex = i;
-            } else {
-                maIndex = i - offset;
-                if (maIndex < 0 || maIndex >= maValues.length) {
-                    maIndex = -1;
-                }
-            }
-            
-            if (maIndex >= 0 && maIndex < maValues.length) {
-                double maVal = maValues[maIndex];
-                maStr = formatter.format(maVal);
-                
-                double diff = originalData[i] - maVal;
-                diffStr = formatter.format(diff);
-                
-                if (maVal != 0) {
-                    double pctChange = (diff / maVal) * 100;
-                    pctChangeStr = formatter.format(pctChange) + "%";
-                }
-                
+        if (comparable) {
+            int end = Math.min(originalData.size(), maValues.length + offset);
+            for (int i = offset; i < end; i++) {
+                double diff = originalData.get(i) - maValues[i - offset];
                 sumDiff += diff;
                 sumAbsDiff += Math.abs(diff);
                 compareCount++;
             }
-            
-            tableModel.addRow(new Object[]{indexStr, originalStr, maStr, diffStr, pctChangeStr});
+        }
+        
+        boolean restructure = (bands != null) != tableModel.hasBands();
+        tableModel.setResults(originalData, maValues, bands, offset, comparable);
+        if (restructure) {
+            setColumnWidths();
         }
         
         StringBuilder summary = new StringBuilder();
         summary.append(maType);
-        if (!maType.contains("EMA")) {
+        if (maType.contains("Percentile")) {
+            summary.append(" (window=").append(windowSize);
+            summary.append(", p=").append(percentileSpinner.getValue()).append(")");
+        } else if (!maType.contains("EMA")) {
             summary.append(" (window=").append(windowSize).append(")");
         } else {
             summary.append(" (α=").append(emaSmoothingSpinner.getValue()).append(")");
@@ -281,6 +329,138 @@ public class MovingAveragePanel extends JPanel {
         summaryLabel.setText(summary.toString());
     }
     
+    /*
+     * Ranks SMA and WMA over a list of windows and EMA over a list of
+     * smoothing factors by their mean absolute error as forecasts of the next
+     * value, on a worker thread. A ranking that finishes after the data has
+     * changed is dropped.
+     */
+    private void compareSettings() {
+        if (originalData.size() == 0) {
+            JOptionPane.showMessageDialog(this, 
+                "No data loaded. Please load a CSV file first.",
+                "No Data",
+                JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        
+        JPanel inputPanel = new JPanel(new GridLayout(2, 2, 8, 8));
+        inputPanel.add(new JLabel("Windows:"));
+        inputPanel.add(sweepWindowsField);
+        inputPanel.add(new JLabel("EMA Smoothing:"));
+        inputPanel.add(sweepAlphasField);
+        
+        int choice = JOptionPane.showConfirmDialog(this, inputPanel,
+            "Compare Moving Average Settings", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (choice != JOptionPane.OK_OPTION) {
+            return;
+        }
+        
+        int[] windows = parseList(sweepWindowsField.getText()).stream()
+            .mapToInt(Double::intValue).filter(w -> w >= 2).toArray();
+        double[] alphas = parseList(sweepAlphasField.getText()).stream()
+            .mapToDouble(Double::doubleValue).filter(a -> a > 0 && a <= 1).toArray();
+        
+        if (windows.length == 0 && alphas.length == 0) {
+            JOptionPane.showMessageDialog(this,
+                "Enter window sizes of at least 2 and smoothing factors between 0 and 1.",
+                "No Settings",
+                JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        
+        if (sweep == null) {
+            sweep = engine.getMovingAverageSweep();
+        }
+        MovingAverageSweep current = sweep;
+        
+        compareButton.setEnabled(false);
+        summaryLabel.setText("Comparing " + (2 * windows.length + alphas.length) + " settings...");
+        
+        comparison = new SwingWorker<>() {
+            @Override
+            protected List<MovingAverageSweep.Result> doInBackground() {
+                return current.compare(windows, alphas);
+            }
+            
+            @Override
+            protected void done() {
+                if (sweep != current) {
+                    current.release();
+                    return;
+                }
+                compareButton.setEnabled(true);
+                try {
+                    List<MovingAverageSweep.Result> results = get();
+                    summaryLabel.setText("Compared " + results.size() + " settings over " + current.size() +
+                                         " values by one-step-ahead MAE: each average of the values before a" +
+                                         " point forecasts that point");
+                    showComparison(results);
+                } catch (InterruptedException | ExecutionException ex) {
+                    summaryLabel.setText("Error comparing settings: " + ex.getMessage());
+                }
+            }
+        };
+        
+        comparison.execute();
+    }
+    
+    /*
+     * Forgets the sweep of the previous data. Its index is released now,
+     * or by the comparison still reading it once that is done.
+     */
+    private void dropSweep() {
+        if (sweep != null && (comparison == null || comparison.isDone())) {
+            sweep.release();
+        }
+        sweep = null;
+    }
+    
+    private void showComparison(List<MovingAverageSweep.Result> results) {
+        DefaultTableModel resultsModel = new DefaultTableModel(
+                new String[]{"Rank", "Type", "Setting", "MAE of Next Value"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        for (int i = 0; i < results.size(); i++) {
+            MovingAverageSweep.Result result = results.get(i);
+            resultsModel.addRow(new Object[]{
+                i + 1, result.getType(), result.getParameter(), formatter.format(result.getMeanAbsoluteError())
+            });
+        }
+        
+        JTable resultsTable = new JTable(resultsModel);
+        resultsTable.setFont(new Font("SansSerif", Font.PLAIN, 12));
+        resultsTable.setRowHeight(22);
+        JScrollPane scrollPane = new JScrollPane(resultsTable);
+        scrollPane.setPreferredSize(new Dimension(420, 300));
+        
+        JPanel resultsPanel = new JPanel(new BorderLayout(0, 8));
+        resultsPanel.add(new JLabel("<html>MAE is the mean absolute error of each setting as a forecast of the<br>" +
+                                    "next value: the average of the values before a point against the point.</html>"),
+                         BorderLayout.NORTH);
+        resultsPanel.add(scrollPane, BorderLayout.CENTER);
+        
+        JOptionPane.showMessageDialog(this, resultsPanel,
+            "Moving Average Comparison (" + results.size() + " settings)", JOptionPane.PLAIN_MESSAGE);
+    }
+    
+    private static List<Double> parseList(String text) {
+        List<Double> numbers = new ArrayList<>();
+        for (String token : text.split("[,;\\s]+")) {
+            try {
+                if (!token.isEmpty()) {
+                    numbers.add(Double.parseDouble(token));
+                }
+            } catch (NumberFormatException ex) {
+                /* Skip anything that is not a number. */
+            }
+        }
+        return numbers;
+    }
+    
     public void setMovingAverageListener(MovingAverageListener listener) {
         this.listener = listener;
     }
@@ -289,13 +469,99 @@ public class MovingAveragePanel extends JPanel {
         return currentMovingAverage;
     }
     
+    /*
+     * The comparison last started, which may still be reading the data, so
+     * whoever releases the data's storage can wait for it off the event
+     * thread. Null when none was started.
+     */
+    public Future<?> getPendingWork() {
+        return comparison;
+    }
+    
     public void clearData() {
-        originalData = new double[0];
+        originalData = ColumnView.EMPTY;
         currentMovingAverage = new double[0];
-        tableModel.setRowCount(0);
+        dropSweep();
+        compareButton.setEnabled(true);
+        tableModel.clear();
         summaryLabel.setText("Load data and calculate moving averages to see results");
     }
     
+    private class MovingAverageTableModel extends AbstractTableModel {
+        
+        private final String[] columns = {
+            "Index", "Original Value", "Moving Average", "Difference", "% Change", "Lower Band", "Upper Band"
+        };
+        
+        private ColumnView original = ColumnView.EMPTY;
+        private double[] values = new double[0];
+        private RollingWindow.Bands bands;
+        private int offset;
+        private boolean comparable;
+        
+        void setResults(ColumnView original, double[] values, RollingWindow.Bands bands, int offset, boolean comparable) {
+            boolean restructure = (bands != null) != hasBands();
+            this.original = original;
+            this.values = values;
+            this.bands = bands;
+            this.offset = offset;
+            this.comparable = comparable;
+            if (restructure) {
+                fireTableStructureChanged();
+            } else {
+                fireTableDataChanged();
+            }
+        }
+        
+        void clear() {
+            setResults(ColumnView.EMPTY, new double[0], null, 0, false);
+        }
+        
+        boolean hasBands() {
+            return bands != null;
+        }
+        
+        @Override
+        public int getRowCount() {
+            return original.size();
+        }
+        
+        @Override
+        public int getColumnCount() {
+            return bands != null ? 7 : 5;
+        }
+        
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+        
+        @Override
+        public Object getValueAt(int row, int column) {
+            if (column == 0) return String.valueOf(row + 1);
+            if (column == 1) return formatter.format(original.get(row));
+            
+            int maIndex = row - offset;
+            if (maIndex < 0 || maIndex >= values.length) return "";
+            
+            double maVal = values[maIndex];
+            double diff = original.get(row) - maVal;
+            
+            switch (column) {
+                case 2:
+                    return formatter.format(maVal);
+                case 3:
+                    return comparable ? formatter.format(diff) : "";
+                case 4:
+                    return comparable && maVal != 0 ? formatter.format((diff / maVal) * 100) + "%" : "";
+                case 5:
+                    return formatter.format(bands.getLower()[maIndex]);
+                default:
+                    return formatter.format(bands.getUpper()[maIndex]);
+            }
+        }
+    }
+    
     private class MovingAverageCellRenderer extends DefaultTableCellRenderer {
         
         @Override
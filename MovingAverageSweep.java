@@ -0,0 +1,351 @@
+package analyzer;
+
+import java.util.*;
+
+/**
+ * Evaluates many moving-average configurations over one series. The series
+ * is read once to build a prefix-sum and an index-weighted prefix-sum index,
+ * after which the simple or weighted average of any window comes from a few
+ * entries of the index, without going back to the values. Exponential
+ * averages for any number of smoothing factors are run side by side in a
+ * single pass.
+ *
+ * The prefixes are taken about the series mean and restart at every block
+ * of 64 rows, so a window within one or two blocks is a difference of small
+ * local sums whose rounding error does not grow with the series. Prefixes
+ * over whole blocks are accumulated with Neumaier's compensated summation,
+ * as RangeIndex does, and only windows longer than a block need them; the
+ * weighted ones weigh each value by its row, and a window takes off its
+ * start row times the plain sum with the rounding of every step carried
+ * along, so that the difference of two large numbers keeps its digits.
+ * The index is kept in the same kind of storage as the series: on the heap
+ * for a heap column, in a mapped file for one kept off it.
+ *
+ * @author Lukasz Golinski
+ */
+public class MovingAverageSweep {
+    
+    private static final int BLOCK_SHIFT = 6;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    
+    private final ColumnView values;
+    private double mean;
+    private NumericColumn prefix;
+    private NumericColumn weightedPrefix;
+    private double[] blockTotals;
+    private double[] blockWeightedTotals;
+    private double[] blockPrefix;
+    private double[] blockPrefixErrors;
+    private double[] blockWeightedPrefix;
+    private double[] blockWeightedPrefixErrors;
+    
+    public MovingAverageSweep(ColumnView column) {
+        this.values = column;
+    }
+    
+    public int size() {
+        return values.size();
+    }
+    
+    public double[] simple(int window) {
+        checkWindow(window);
+        buildIndex();
+        double[] averages = new double[values.size() - window + 1];
+        for (int i = 0; i < averages.length; i++) {
+            averages[i] = mean + sum(i, i + window) / window;
+        }
+        return averages;
+    }
+    
+    /*
+     * Weights 1 for the oldest value up to window for the newest, as
+     * StatisticsEngine.getWeightedMovingAverage uses.
+     */
+    public double[] weighted(int window) {
+        checkWindow(window);
+        buildIndex();
+        double[] averages = new double[values.size() - window + 1];
+        double weightSum = window * (window + 1.0) / 2;
+        for (int i = 0; i < averages.length; i++) {
+            averages[i] = mean + weightedSum(i, i + window) / weightSum;
+        }
+        return averages;
+    }
+    
+    /*
+     * Frees an index kept off the heap. The index is built again if the
+     * sweep is used after this.
+     */
+    public synchronized void release() {
+        if (prefix != null) {
+            prefix.clear();
+            weightedPrefix.clear();
+            prefix = null;
+            weightedPrefix = null;
+        }
+    }
+    
+    /*
+     * Reads the series twice, once for its mean and once for the index.
+     * Within a block the prefix at row r holds the values from the start of
+     * the block up to r, and the weighted prefix weighs each by its offset
+     * in the block; a row at the start of a block holds zeros, and the
+     * block's own totals are kept apart.
+     */
+    private synchronized void buildIndex() {
+        if (prefix != null) {
+            return;
+        }
+        
+        int size = values.size();
+        double sum = 0.0;
+        for (int i = 0; i < size; i++) {
+            sum += values.get(i);
+        }
+        mean = size > 0 ? sum / size : 0.0;
+        
+        ColumnStorage storage = values.isOffHeap() ? ColumnStorage.MAPPED : ColumnStorage.HEAP;
+        NumericColumn plain = storage.createColumn();
+        NumericColumn indexed = storage.createColumn();
+        
+        int blocks = (size >>> BLOCK_SHIFT) + 1;
+        blockTotals = new double[blocks];
+        blockWeightedTotals = new double[blocks];
+        blockPrefix = new double[blocks + 1];
+        blockPrefixErrors = new double[blocks + 1];
+        blockWeightedPrefix = new double[blocks + 1];
+        blockWeightedPrefixErrors = new double[blocks + 1];
+        
+        double local = 0.0;
+        double localWeighted = 0.0;
+        for (int i = 0; i <= size; i++) {
+            int offset = i & (BLOCK_SIZE - 1);
+            if (offset == 0 && i > 0) {
+                closeBlock((i >>> BLOCK_SHIFT) - 1, local, localWeighted);
+                local = 0.0;
+                localWeighted = 0.0;
+            }
+            plain.add(local);
+            indexed.add(localWeighted);
+            if (i < size) {
+                double centered = values.get(i) - mean;
+                local += centered;
+                localWeighted += offset * centered;
+            }
+        }
+        closeBlock(size >>> BLOCK_SHIFT, local, localWeighted);
+        
+        prefix = plain;
+        weightedPrefix = indexed;
+    }
+    
+    /*
+     * Records the totals of a block and carries the compensated prefixes
+     * over whole blocks past it. The weighted prefix weighs every value by
+     * its row, so a block adds its offset-weighted total and its start row
+     * times its plain total.
+     */
+    private void closeBlock(int block, double total, double weightedTotal) {
+        blockTotals[block] = total;
+        blockWeightedTotals[block] = weightedTotal;
+        
+        double sum = blockPrefix[block];
+        double next = sum + total;
+        blockPrefixErrors[block + 1] = blockPrefixErrors[block] + roundoff(sum, total, next);
+        blockPrefix[block + 1] = next;
+        
+        double start = block << BLOCK_SHIFT;
+        double product = start * total;
+        sum = blockWeightedPrefix[block];
+        next = sum + weightedTotal;
+        double error = roundoff(sum, weightedTotal, next) + Math.fma(start, total, -product);
+        sum = next;
+        next = sum + product;
+        blockWeightedPrefixErrors[block + 1] = blockWeightedPrefixErrors[block] + error + roundoff(sum, product, next);
+        blockWeightedPrefix[block + 1] = next;
+    }
+    
+    /*
+     * The rounding error of a + b, where sum is the rounded a + b.
+     */
+    private static double roundoff(double a, double b, double sum) {
+        return Math.abs(a) >= Math.abs(b) ? (a - sum) + b : (b - sum) + a;
+    }
+    
+    /*
+     * Sum of the centered values in rows from (inclusive) to to (exclusive).
+     */
+    private double sum(int from, int to) {
+        int first = from >>> BLOCK_SHIFT;
+        int last = to >>> BLOCK_SHIFT;
+        if (first == last) {
+            return prefix.get(to) - prefix.get(from);
+        }
+        
+        double sum = (blockTotals[first] - prefix.get(from)) + prefix.get(to);
+        if (last > first + 1) {
+            sum += (blockPrefix[last] - blockPrefix[first + 1])
+                 + (blockPrefixErrors[last] - blockPrefixErrors[first + 1]);
+        }
+        return sum;
+    }
+    
+    /*
+     * Sum of the centered values in rows from (inclusive) to to (exclusive),
+     * weighted 1 for row from up to to - from for the last. Within a block
+     * starting at row s, a value's weight is its offset in the block plus
+     * s - from + 1.
+     */
+    private double weightedSum(int from, int to) {
+        int first = from >>> BLOCK_SHIFT;
+        int last = to >>> BLOCK_SHIFT;
+        double firstBase = (first << BLOCK_SHIFT) - from + 1;
+        if (first == last) {
+            return (weightedPrefix.get(to) - weightedPrefix.get(from))
+                 + firstBase * (prefix.get(to) - prefix.get(from));
+        }
+        
+        double lastBase = (last << BLOCK_SHIFT) - from + 1;
+        double sum = (blockWeightedTotals[first] - weightedPrefix.get(from))
+                   + firstBase * (blockTotals[first] - prefix.get(from))
+                   + weightedPrefix.get(to) + lastBase * prefix.get(to);
+        if (last > first + 1) {
+            sum += wholeBlocksWeighted(first + 1, last, from - 1.0);
+        }
+        return sum;
+    }
+    
+    /*
+     * The row-weighted sum of whole blocks less base times their plain sum.
+     * Both are about base times the plain sum, so every subtraction and
+     * the product keep their rounding error, which is added back at the end.
+     */
+    private double wholeBlocksWeighted(int from, int to, double base) {
+        double indexed = blockWeightedPrefix[to] - blockWeightedPrefix[from];
+        double error = roundoff(blockWeightedPrefix[to], -blockWeightedPrefix[from], indexed)
+                     + (blockWeightedPrefixErrors[to] - blockWeightedPrefixErrors[from]);
+        
+        double plain = blockPrefix[to] - blockPrefix[from];
+        double plainError = roundoff(blockPrefix[to], -blockPrefix[from], plain)
+                          + (blockPrefixErrors[to] - blockPrefixErrors[from]);
+        double product = base * plain;
+        error -= Math.fma(base, plain, -product) + base * plainError;
+        
+        double difference = indexed - product;
+        return difference + (error + roundoff(indexed, -product, difference));
+    }
+    
+    /*
+     * One exponential average per smoothing factor, all advanced together in
+     * a single pass over the values.
+     */
+    public double[][] exponential(double... alphas) {
+        int count = alphas.length;
+        int size = values.size();
+        double[][] averages = new double[count][size];
+        if (size == 0) {
+            return averages;
+        }
+        
+        double[] current = new double[count];
+        Arrays.fill(current, values.get(0));
+        for (int a = 0; a < count; a++) {
+            averages[a][0] = current[a];
+        }
+        
+        for (int i = 1; i < size; i++) {
+            double val = values.get(i);
+            for (int a = 0; a < count; a++) {
+                current[a] = alphas[a] * val + (1 - alphas[a]) * current[a];
+                averages[a][i] = current[a];
+            }
+        }
+        
+        return averages;
+    }
+    
+    /*
+     * Mean absolute error of every configuration as a forecast of the next
+     * value, best first: each average over the values before a point is
+     * compared with the point itself, so no setting is scored against a
+     * value it has already absorbed. Windows that leave nothing to forecast
+     * are left out. SMA and WMA come from the index, the point included, and
+     * all EMAs share one pass over the values; nothing but the errors is
+     * kept.
+     */
+    public List<Result> compare(int[] windows, double[] alphas) {
+        List<Result> results = new ArrayList<>();
+        int size = values.size();
+        
+        for (int window : windows) {
+            if (window <= 0 || window >= size) continue;
+            buildIndex();
+            
+            int count = size - window;
+            double weightSum = window * (window + 1.0) / 2;
+            double simpleError = 0.0;
+            double weightedError = 0.0;
+            
+            for (int i = 0; i < count; i++) {
+                double target = sum(i + window, i + window + 1);
+                simpleError += Math.abs(target - sum(i, i + window) / window);
+                weightedError += Math.abs(target - weightedSum(i, i + window) / weightSum);
+            }
+            
+            results.add(new Result("SMA", "window=" + window, simpleError / count));
+            results.add(new Result("WMA", "window=" + window, weightedError / count));
+        }
+        
+        if (alphas.length > 0 && size > 1) {
+            double[] current = new double[alphas.length];
+            double[] errors = new double[alphas.length];
+            Arrays.fill(current, values.get(0));
+            
+            for (int i = 1; i < size; i++) {
+                double val = values.get(i);
+                for (int a = 0; a < alphas.length; a++) {
+                    errors[a] += Math.abs(val - current[a]);
+                    current[a] = alphas[a] * val + (1 - alphas[a]) * current[a];
+                }
+            }
+            
+            for (int a = 0; a < alphas.length; a++) {
+                results.add(new Result("EMA", "α=" + alphas[a], errors[a] / (size - 1)));
+            }
+        }
+        
+        results.sort(Comparator.comparingDouble(Result::getMeanAbsoluteError));
+        return results;
+    }
+    
+    private void checkWindow(int window) {
+        if (window <= 0 || window > values.size()) {
+            throw new IllegalArgumentException("Window must be between 1 and " + values.size() + ": " + window);
+        }
+    }
+    
+    public static final class Result {
+        
+        private final String type;
+        private final String parameter;
+        private final double meanAbsoluteError;
+        
+        Result(String type, String parameter, double meanAbsoluteError) {
+            this.type = type;
+            this.parameter = parameter;
+            this.meanAbsoluteError = meanAbsoluteError;
+        }
+        
+        public String getType() {
+            return type;
+        }
+        
+        public String getParameter() {
+            return parameter;
+        }
+        
+        public double getMeanAbsoluteError() {
+            return meanAbsoluteError;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package analyzer;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Scans a numeric cell in place, without regular expressions, temporary
+ * strings or exceptions. Currency symbols and percent signs are ignored,
+ * grouping separators are skipped when three digits follow them and a value
+ * in parentheses is read as negative. Anything else that is not a plain
+ * decimal number (including NA, N/A, null, - and .) is reported as missing.
+ *
+ * Values with at most 18 significant digits and a decimal exponent within
+ * +/-22 are converted with one correctly rounded multiply or divide, which
+ * gives the same bits as Double.parseDouble; everything else is handed to
+ * Double.parseDouble after validation.
+ *
+ * Instances keep the last parsed value and are not thread-safe.
+ *
+ * @author Lukasz Golinski
+ */
+public class NumberParser {
+    
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int MAX_MANTISSA_DIGITS = 18;
+    
+    private static final int START = 0;
+    private static final int SIGN = 1;
+    private static final int INTEGER = 2;
+    private static final int FRACTION = 3;
+    private static final int EXPONENT_MARK = 4;
+    private static final int EXPONENT_SIGN = 5;
+    private static final int EXPONENT = 6;
+    private static final int END = 7;
+    
+    private final char decimalSeparator;
+    private final char groupingSeparator;
+    
+    private double value;
+    private char[] input;
+    private char[] cleaned;
+    
+    public NumberParser() {
+        this('.', ',');
+    }
+    
+    public NumberParser(char decimalSeparator, char groupingSeparator) {
+        this.decimalSeparator = decimalSeparator;
+        this.groupingSeparator = groupingSeparator;
+        this.input = new char[32];
+        this.cleaned = new char[32];
+    }
+    
+    public static NumberParser forLocale(Locale locale) {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        return new NumberParser(symbols.getDecimalSeparator(), symbols.getGroupingSeparator());
+    }
+    
+    public boolean parse(CharSequence text) {
+        return text != null && parse(text, 0, text.length());
+    }
+    
+    public boolean parse(CharSequence text, int from, int to) {
+        int length = to - from;
+        ensureInputCapacity(length);
+        for (int i = 0; i < length; i++) {
+            input[i] = text.charAt(from + i);
+        }
+        return parseChars(input, 0, length);
+    }
+    
+    /*
+     * Decodes the UTF-8 bytes of one field into the reusable input buffer, so a
+     * tokenizer can hand over a slice of its read buffer without building a
+     * String. Sequences that cannot be decoded become U+FFFD and make the field
+     * non-numeric.
+     */
+    public boolean parse(byte[] bytes, int from, int to) {
+        ensureInputCapacity(to - from);
+        int length = 0;
+        int i = from;
+        
+        while (i < to) {
+            int b = bytes[i++];
+            
+            if (b >= 0) {
+                input[length++] = (char) b;
+            } else if ((b & 0xE0) == 0xC0 && i < to && (bytes[i] & 0xC0) == 0x80) {
+                input[length++] = (char) (((b & 0x1F) << 6) | (bytes[i++] & 0x3F));
+            } else if ((b & 0xF0) == 0xE0 && i + 1 < to
+                    && (bytes[i] & 0xC0) == 0x80 && (bytes[i + 1] & 0xC0) == 0x80) {
+                input[length++] = (char) (((b & 0x0F) << 12) | ((bytes[i] & 0x3F) << 6) | (bytes[i + 1] & 0x3F));
+                i += 2;
+            } else {
+                input[length++] = '\uFFFD';
+            }
+        }
+        
+        return parseChars(input, 0, length);
+    }
+    
+    private boolean parseChars(char[] text, int from, int to) {
+        while (from < to && text[from] <= ' ') from++;
+        while (to > from && text[to - 1] <= ' ') to--;
+        
+        int state = START;
+        boolean negative = false;
+        long mantissa = 0;
+        int mantissaDigits = 0;
+        boolean truncated = false;
+        int scale = 0;
+        boolean hasDigits = false;
+        boolean negativeExponent = false;
+        int exponent = 0;
+        
+        for (int i = from; i < to; i++) {
+            char c = text[i];
+            
+            if (isIgnored(c) || c == ')') {
+                continue;
+            }
+            
+            if ((c == groupingSeparator || c <= ' ') && digitsFollow(text, i + 1, to)) {
+                continue;
+            }
+            
+            if (c >= '0' && c <= '9') {
+                int digit = c - '0';
+                switch (state) {
+                    case START:
+                    case SIGN:
+                    case INTEGER:
+                        state = INTEGER;
+                        hasDigits = true;
+                        if (mantissaDigits < MAX_MANTISSA_DIGITS) {
+                            if (mantissa != 0 || digit != 0) {
+                                mantissa = mantissa * 10 + digit;
+                                mantissaDigits++;
+                            }
+                        } else {
+                            scale++;
+                            truncated |= digit != 0;
+                        }
+                        break;
+                    case FRACTION:
+                        hasDigits = true;
+                        if (mantissaDigits < MAX_MANTISSA_DIGITS) {
+                            if (mantissa != 0 || digit != 0) {
+                                mantissa = mantissa * 10 + digit;
+                                mantissaDigits++;
+                            }
+                            scale--;
+                        } else {
+                            truncated |= digit != 0;
+                        }
+                        break;
+                    case EXPONENT_MARK:
+                    case EXPONENT_SIGN:
+                    case EXPONENT:
+                        state = EXPONENT;
+                        if (exponent < 100000) {
+                            exponent = exponent * 10 + digit;
+                        }
+                        break;
+                    default:
+                        return missing();
+                }
+            } else if (c == decimalSeparator) {
+                if (state > INTEGER) return missing();
+                state = FRACTION;
+            } else if (c == '-' || c == '(' || c == '+') {
+                if (state == START) {
+                    state = SIGN;
+                    negative = c != '+';
+                } else if (state == EXPONENT_MARK) {
+                    state = EXPONENT_SIGN;
+                    negativeExponent = c != '+';
+                } else {
+                    return missing();
+                }
+            } else if (c == 'e' || c == 'E') {
+                if ((state != INTEGER && state != FRACTION) || !hasDigits) return missing();
+                state = EXPONENT_MARK;
+            } else if (c <= ' ') {
+                if (state == START) continue;
+                if (state == SIGN || state == EXPONENT_MARK || state == EXPONENT_SIGN) return missing();
+                state = END;
+            } else {
+                return missing();
+            }
+        }
+        
+        if (!hasDigits || state == EXPONENT_MARK || state == EXPONENT_SIGN) {
+            return missing();
+        }
+        
+        if (mantissa == 0) {
+            value = negative ? -0.0 : 0.0;
+            return true;
+        }
+        
+        int decimalExponent = scale + (negativeExponent ? -exponent : exponent);
+        
+        if (!truncated && mantissa <= MAX_EXACT_MANTISSA
+                && decimalExponent >= -22 && decimalExponent <= 22) {
+            double result = decimalExponent >= 0
+                ? mantissa * POWERS_OF_TEN[decimalExponent]
+                : mantissa / POWERS_OF_TEN[-decimalExponent];
+            value = negative ? -result : result;
+            return true;
+        }
+        
+        value = parseSlowPath(text, from, to);
+        return true;
+    }
+    
+    public double getValue() {
+        return value;
+    }
+    
+    public char getDecimalSeparator() {
+        return decimalSeparator;
+    }
+    
+    public char getGroupingSeparator() {
+        return groupingSeparator;
+    }
+    
+    private boolean missing() {
+        value = Double.NaN;
+        return false;
+    }
+    
+    private void ensureInputCapacity(int length) {
+        if (input.length < length) {
+            input = new char[Math.max(length, input.length * 2)];
+        }
+    }
+    
+    private boolean digitsFollow(char[] text, int from, int to) {
+        int digits = 0;
+        for (int i = from; i < to && digits < 3; i++) {
+            char c = text[i];
+            if (isIgnored(c)) continue;
+            if (c < '0' || c > '9') return false;
+            digits++;
+        }
+        return digits == 3;
+    }
+    
+    private static boolean isIgnored(char c) {
+        return c == '$' || c == '%' || c == '€' || c == '£' || c == '¥';
+    }
+    
+    private double parseSlowPath(char[] text, int from, int to) {
+        if (cleaned.length < to - from) {
+            cleaned = new char[to - from];
+        }
+        
+        int length = 0;
+        for (int i = from; i < to; i++) {
+            char c = text[i];
+            if (isIgnored(c) || c == ')' || c <= ' ') continue;
+            if (c == groupingSeparator && digitsFollow(text, i + 1, to)) continue;
+            if (c == '(') c = '-';
+            else if (c == decimalSeparator) c = '.';
+            cleaned[length++] = c;
+        }
+        
+        return Double.parseDouble(new String(cleaned, 0, length));
+    }
+}
@@ -0,0 +1,24 @@
+package analyzer;
+
+/**
+ * A column the loader can append to. Implementations differ only in where
+ * the values live; readers see them through ColumnView. Appending NaN
+ * records a missing row.
+ *
+ * @author Lukasz Golinski
+ */
+public interface NumericColumn extends ColumnView {
+    
+    void add(double value);
+    
+    default void addMissing() {
+        add(Double.NaN);
+    }
+    
+    void addAll(double[] values, int count);
+    
+    /*
+     * Drops every row and gives back the storage the column holds.
+     */
+    void clear();
+}
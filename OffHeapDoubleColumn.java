@@ -0,0 +1,205 @@
+package analyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Column of doubles kept outside the Java heap, either in direct buffers or
+ * in a temporary file mapped into memory. Values are stored in segments of
+ * 2^20 doubles (8 MB); the last segment starts small and doubles until it
+ * reaches the segment size, so short columns stay short.
+ *
+ * Only the validity bitmap, one bit per row, stays on the heap. A mapped
+ * column's file is deleted when the column is cleared or the JVM exits.
+ *
+ * @author Lukasz Golinski
+ */
+public class OffHeapDoubleColumn implements NumericColumn {
+    
+    private static final int SEGMENT_SHIFT = 20;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final int INITIAL_CAPACITY = 1024;
+    
+    private final boolean fileBacked;
+    private File file;
+    private FileChannel channel;
+    
+    private DoubleBuffer[] segments;
+    private int segmentCount;
+    private int size;
+    private ValidityBitmap validity;
+    
+    public OffHeapDoubleColumn(boolean fileBacked) {
+        this.fileBacked = fileBacked;
+        this.segments = new DoubleBuffer[4];
+        this.segmentCount = 0;
+        this.size = 0;
+        this.validity = new ValidityBitmap();
+    }
+    
+    public boolean isFileBacked() {
+        return fileBacked;
+    }
+    
+    @Override
+    public boolean isOffHeap() {
+        return true;
+    }
+    
+    @Override
+    public void add(double value) {
+        int segment = size >>> SEGMENT_SHIFT;
+        int offset = size & SEGMENT_MASK;
+        
+        if (segment == segmentCount || offset == segments[segment].capacity()) {
+            ensureSegment(segment, offset + 1);
+        }
+        
+        segments[segment].put(offset, value);
+        if (!Double.isNaN(value)) {
+            validity.set(size);
+        }
+        size++;
+    }
+    
+    @Override
+    public void addAll(double[] values, int count) {
+        int copied = 0;
+        
+        while (copied < count) {
+            int segment = size >>> SEGMENT_SHIFT;
+            int offset = size & SEGMENT_MASK;
+            int length = Math.min(count - copied, SEGMENT_SIZE - offset);
+            
+            ensureSegment(segment, offset + length);
+            segments[segment].put(offset, values, copied, length);
+            
+            for (int i = 0; i < length; i++) {
+                if (!Double.isNaN(values[copied + i])) {
+                    validity.set(size + i);
+                }
+            }
+            
+            copied += length;
+            size += length;
+        }
+    }
+    
+    private void ensureSegment(int segment, int required) {
+        if (segment == segmentCount) {
+            if (segmentCount == segments.length) {
+                segments = Arrays.copyOf(segments, segmentCount * 2);
+            }
+            int capacity = segmentCount == 0 ? INITIAL_CAPACITY : SEGMENT_SIZE;
+            segments[segmentCount] = allocate(segmentCount, Math.max(capacity, required), null);
+            segmentCount++;
+        } else if (segments[segment].capacity() < required) {
+            int capacity = segments[segment].capacity();
+            while (capacity < required) {
+                capacity = Math.min(SEGMENT_SIZE, capacity * 2);
+            }
+            segments[segment] = allocate(segment, capacity, segments[segment]);
+        }
+    }
+    
+    /*
+     * Segment i of a mapped column always starts at byte i * 8 MB of the file,
+     * so growing the last segment only maps a longer region over the values
+     * already written. A direct segment is copied into a larger buffer.
+     */
+    private DoubleBuffer allocate(int segment, int capacity, DoubleBuffer previous) {
+        long bytes = (long) capacity * Double.BYTES;
+        
+        if (!fileBacked) {
+            DoubleBuffer buffer = ByteBuffer.allocateDirect((int) bytes)
+                .order(ByteOrder.nativeOrder())
+                .asDoubleBuffer();
+            if (previous != null) {
+                buffer.put(0, previous, 0, previous.capacity());
+            }
+            return buffer;
+        }
+        
+        try {
+            if (channel == null) {
+                file = File.createTempFile("csv-column", ".bin");
+                file.deleteOnExit();
+                channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            long position = ((long) segment << SEGMENT_SHIFT) * Double.BYTES;
+            return channel.map(FileChannel.MapMode.READ_WRITE, position, bytes)
+                .order(ByteOrder.nativeOrder())
+                .asDoubleBuffer();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot map column storage", ex);
+        }
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public double get(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of range for column of size " + size);
+        }
+        return segments[row >>> SEGMENT_SHIFT].get(row & SEGMENT_MASK);
+    }
+    
+    @Override
+    public boolean isValid(int row) {
+        return row >= 0 && row < size && validity.get(row);
+    }
+    
+    @Override
+    public int validCount() {
+        return validity.cardinality();
+    }
+    
+    @Override
+    public long validityWord(int word) {
+        return validity.word(word);
+    }
+    
+    @Override
+    public void copyTo(int from, double[] dest, int destPos, int length) {
+        while (length > 0) {
+            int offset = from & SEGMENT_MASK;
+            int chunk = Math.min(length, SEGMENT_SIZE - offset);
+            segments[from >>> SEGMENT_SHIFT].get(offset, dest, destPos, chunk);
+            from += chunk;
+            destPos += chunk;
+            length -= chunk;
+        }
+    }
+    
+    @Override
+    public void clear() {
+        segments = new DoubleBuffer[4];
+        segmentCount = 0;
+        size = 0;
+        validity.clear();
+        
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                // the file is removed below or at exit either way
+            }
+            channel = null;
+            file.delete();
+            file = null;
+        }
+    }
+}
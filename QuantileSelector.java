@@ -0,0 +1,190 @@
+package analyzer;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Finds values by rank in an unsorted array without sorting all of it.
+ * Each selection partitions the array in place and records which positions
+ * now hold their final sorted value; later selections only search between
+ * the nearest of those positions, so asking for several ranks costs about
+ * as much as one linear pass over the array. A selection that partitions
+ * badly too many times sorts its remaining range instead, which bounds the
+ * worst case at n log n.
+ *
+ * Results match Arrays.sort on the same values: NaN sorts last and -0.0
+ * before 0.0.
+ *
+ * @author Lukasz Golinski
+ */
+public class QuantileSelector {
+    
+    private final double[] values;
+    private final int comparableSize;
+    private final int negatives;
+    private final int negativeZeros;
+    private final BitSet fixed;
+    
+    /*
+     * Takes ownership of the array, which is reordered as ranks are selected.
+     */
+    public QuantileSelector(double[] values) {
+        this.values = values;
+        this.fixed = new BitSet(values.length);
+        
+        int end = values.length;
+        int negativeCount = 0;
+        int negativeZeroCount = 0;
+        
+        for (int i = 0; i < end; i++) {
+            double val = values[i];
+            if (val != val) {
+                values[i--] = values[--end];
+                values[end] = val;
+            } else if (val < 0) {
+                negativeCount++;
+            } else if (val == 0 && Double.doubleToRawLongBits(val) != 0) {
+                negativeZeroCount++;
+            }
+        }
+        
+        this.comparableSize = end;
+        this.negatives = negativeCount;
+        this.negativeZeros = negativeZeroCount;
+        this.fixed.set(end, values.length);
+    }
+    
+    public int size() {
+        return values.length;
+    }
+    
+    public double select(int rank) {
+        if (rank < 0 || rank >= values.length) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " out of range for " + values.length + " values");
+        }
+        
+        if (!fixed.get(rank)) {
+            int from = fixed.previousSetBit(rank) + 1;
+            int to = fixed.nextSetBit(rank);
+            if (to < 0) to = values.length;
+            
+            if (rank == from || rank == to - 1) {
+                selectExtreme(from, to, rank == from);
+            } else {
+                introSelect(from, to, rank);
+            }
+        }
+        
+        double val = values[rank];
+        if (val == 0) {
+            return rank - negatives < negativeZeros ? -0.0 : 0.0;
+        }
+        return val;
+    }
+    
+    /*
+     * Selects several ranks, lowest first, so each one narrows the search for
+     * the next.
+     */
+    public void selectAll(int... ranks) {
+        int[] order = ranks.clone();
+        Arrays.sort(order);
+        for (int rank : order) {
+            select(rank);
+        }
+    }
+    
+    public boolean isSorted() {
+        return fixed.nextClearBit(0) >= values.length;
+    }
+    
+    /*
+     * Finishes sorting the array and returns it. The returned array is the
+     * selector's own storage.
+     */
+    public double[] sorted() {
+        int from = fixed.nextClearBit(0);
+        while (from < values.length) {
+            int to = fixed.nextSetBit(from);
+            if (to < 0) to = values.length;
+            Arrays.sort(values, from, to);
+            from = fixed.nextClearBit(to);
+        }
+        fixed.set(0, values.length);
+        
+        for (int i = negatives; i < comparableSize && values[i] == 0; i++) {
+            values[i] = i - negatives < negativeZeros ? -0.0 : 0.0;
+        }
+        return values;
+    }
+    
+    private void selectExtreme(int from, int to, boolean minimum) {
+        int best = from;
+        for (int i = from + 1; i < to; i++) {
+            if (minimum ? values[i] < values[best] : values[i] > values[best]) {
+                best = i;
+            }
+        }
+        
+        int target = minimum ? from : to - 1;
+        swap(best, target);
+        fixed.set(target);
+    }
+    
+    private void introSelect(int from, int to, int rank) {
+        int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(to - from));
+        
+        while (to - from > 1) {
+            if (depthLimit-- == 0) {
+                Arrays.sort(values, from, to);
+                fixed.set(from, to);
+                return;
+            }
+            
+            double pivot = medianOfThree(from, from + ((to - from) >>> 1), to - 1);
+            
+            // three-way partition: [from, lt) < pivot, [lt, gt) == pivot, [gt, to) > pivot
+            int lt = from;
+            int gt = to;
+            int i = from;
+            while (i < gt) {
+                double val = values[i];
+                if (val < pivot) {
+                    swap(lt++, i++);
+                } else if (val > pivot) {
+                    swap(i, --gt);
+                } else {
+                    i++;
+                }
+            }
+            
+            fixed.set(lt, gt);
+            
+            if (rank < lt) {
+                to = lt;
+            } else if (rank >= gt) {
+                from = gt;
+            } else {
+                return;
+            }
+        }
+        
+        fixed.set(from);
+    }
+    
+    private double medianOfThree(int a, int b, int c) {
+        double x = values[a];
+        double y = values[b];
+        double z = values[c];
+        if (x < y) {
+            return y < z ? y : (x < z ? z : x);
+        }
+        return x < z ? x : (y < z ? z : y);
+    }
+    
+    private void swap(int i, int j) {
+        double tmp = values[i];
+        values[i] = values[j];
+        values[j] = tmp;
+    }
+}
@@ -0,0 +1,249 @@
+package analyzer;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * KLL quantile sketch: answers rank queries over a stream of doubles in
+ * memory that grows only with the logarithm of the stream length. Values
+ * are kept in levels. Level capacities shrink by a factor of 2/3 below the
+ * top, which holds k values, but no level is narrower than 8. Only when the
+ * sketch holds as many values as all levels together can is the lowest
+ * full level sorted and every other value of it moved up a level with
+ * twice the weight, so a level may run over its own capacity while others
+ * have room; compacting lazily like this keeps more of the low levels and
+ * with them the accuracy.
+ *
+ * A quantile is off by roughly 2 / k of the count in rank, so the default
+ * k of 200 is accurate to about one percentile. The minimum and
+ * maximum are exact. Sketches built over separate parts of a column can be
+ * merged, with the same accuracy as one sketch over the whole column.
+ *
+ * @author Lukasz Golinski
+ */
+public class QuantileSketch {
+    
+    public static final int DEFAULT_K = 200;
+    public static final int MIN_K = 8;
+    
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int MIN_WIDTH = 8;
+    private static final long SEED = 0x5DEECE66DL;
+    
+    private final int k;
+    private final Random random;
+    
+    private double[][] levels;
+    private int[] sizes;
+    private int[] capacities;
+    private int levelCount;
+    private int retained;
+    private int capacity;
+    private long count;
+    private double min;
+    private double max;
+    
+    private double[] sortedValues;
+    private long[] sortedWeights;
+    
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+    
+    public QuantileSketch(int k) {
+        this.k = Math.max(MIN_K, k);
+        this.random = new Random(SEED);
+        this.levels = new double[1][];
+        this.levels[0] = new double[this.k];
+        this.sizes = new int[1];
+        this.levelCount = 1;
+        this.capacities = capacities(1);
+        this.capacity = capacities[0];
+        this.min = Double.POSITIVE_INFINITY;
+        this.max = Double.NEGATIVE_INFINITY;
+    }
+    
+    public int getK() {
+        return k;
+    }
+    
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        
+        append(0, value);
+        if (retained >= capacity) {
+            compress();
+        }
+        sortedValues = null;
+    }
+    
+    public void merge(QuantileSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        
+        while (levelCount < other.levelCount) {
+            addLevel();
+        }
+        for (int h = 0; h < other.levelCount; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        
+        compress();
+        sortedValues = null;
+    }
+    
+    /*
+     * The capacity of every level for the given number of levels; they only
+     * change when a level is added.
+     */
+    private int[] capacities(int levels) {
+        int[] result = new int[levels];
+        for (int level = 0; level < levels; level++) {
+            int depth = levels - 1 - level;
+            result[level] = Math.max(MIN_WIDTH, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+        }
+        return result;
+    }
+    
+    private void append(int level, double value) {
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], Math.max(4, sizes[level] * 2));
+        }
+        levels[level][sizes[level]++] = value;
+        retained++;
+    }
+    
+    private void addLevel() {
+        levels = Arrays.copyOf(levels, levelCount + 1);
+        sizes = Arrays.copyOf(sizes, levelCount + 1);
+        levels[levelCount] = new double[k];
+        levelCount++;
+        capacities = capacities(levelCount);
+        capacity = 0;
+        for (int width : capacities) {
+            capacity += width;
+        }
+    }
+    
+    /*
+     * Compacts the lowest level at or over its capacity until the sketch
+     * holds fewer values than the levels together can. While it holds that
+     * many, some level is bound to be full.
+     */
+    private void compress() {
+        while (retained >= capacity) {
+            int h = 0;
+            while (sizes[h] < capacities[h]) {
+                h++;
+            }
+            if (h + 1 == levelCount) {
+                addLevel();
+            }
+            
+            double[] level = levels[h];
+            int size = sizes[h];
+            Arrays.sort(level, 0, size);
+            
+            // an odd value out stays behind at the top of this level
+            int paired = size & ~1;
+            int offset = random.nextBoolean() ? 1 : 0;
+            for (int i = offset; i < paired; i += 2) {
+                append(h + 1, level[i]);
+            }
+            
+            if (paired < size) {
+                level[0] = level[size - 1];
+                sizes[h] = 1;
+            } else {
+                sizes[h] = 0;
+            }
+            retained -= paired;
+        }
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    public double getMinimum() {
+        return count > 0 ? min : 0.0;
+    }
+    
+    public double getMaximum() {
+        return count > 0 ? max : 0.0;
+    }
+    
+    /*
+     * Estimated value at the given fraction of the way from the minimum (0) to
+     * the maximum (1), using the same rank convention as
+     * StatisticsEngine.getPercentile.
+     */
+    public double getQuantile(double fraction) {
+        if (count == 0) return 0.0;
+        if (fraction <= 0) return min;
+        if (fraction >= 1) return max;
+        
+        if (sortedValues == null) {
+            buildSortedView();
+        }
+        
+        double rank = fraction * (count - 1);
+        long cumulative = 0;
+        
+        for (int i = 0; i < sortedValues.length; i++) {
+            cumulative += sortedWeights[i];
+            if (cumulative > rank) {
+                return sortedValues[i];
+            }
+        }
+        return max;
+    }
+    
+    private void buildSortedView() {
+        int total = getRetainedCount();
+        double[] values = new double[total];
+        long[] weights = new long[total];
+        int n = 0;
+        
+        for (int h = 0; h < levelCount; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                values[n] = levels[h][i];
+                weights[n] = 1L << h;
+                n++;
+            }
+        }
+        
+        Integer[] order = new Integer[total];
+        for (int i = 0; i < total; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        
+        sortedValues = new double[total];
+        sortedWeights = new long[total];
+        for (int i = 0; i < total; i++) {
+            sortedValues[i] = values[order[i]];
+            sortedWeights[i] = weights[order[i]];
+        }
+    }
+    
+    /*
+     * Number of values the sketch currently holds, which bounds its memory.
+     */
+    public int getRetainedCount() {
+        return retained;
+    }
+}
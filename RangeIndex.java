@@ -0,0 +1,163 @@
+package analyzer;
+
+/**
+ * Answers count, sum, mean and variance for any range of rows of a column
+ * in constant time. Prefix sums of the values and of their squares are kept
+ * at every 64th row, the rows of one validity word, so the index is small
+ * next to the column; a query adds the difference of two prefixes to at
+ * most two partial words read from the column itself.
+ *
+ * The prefixes are accumulated with Neumaier's compensated summation and
+ * stored together with their running compensation, and values are taken
+ * about a shift near the column mean, so that the difference of two large
+ * prefixes keeps the digits a short range needs.
+ *
+ * @author Lukasz Golinski
+ */
+public class RangeIndex {
+    
+    private final ColumnView column;
+    private final double shift;
+    private final int[] counts;
+    private final double[] sums;
+    private final double[] sumErrors;
+    private final double[] squares;
+    private final double[] squareErrors;
+    
+    public RangeIndex(ColumnView column, double shift) {
+        this.column = column;
+        this.shift = Double.isFinite(shift) ? shift : 0.0;
+        
+        int words = column.wordCount();
+        this.counts = new int[words + 1];
+        this.sums = new double[words + 1];
+        this.sumErrors = new double[words + 1];
+        this.squares = new double[words + 1];
+        this.squareErrors = new double[words + 1];
+        
+        int count = 0;
+        double sum = 0.0;
+        double sumError = 0.0;
+        double square = 0.0;
+        double squareError = 0.0;
+        
+        for (int w = 0; w < words; w++) {
+            long bits = column.validityWord(w);
+            count += Long.bitCount(bits);
+            
+            while (bits != 0) {
+                double val = column.get((w << 6) + Long.numberOfTrailingZeros(bits)) - this.shift;
+                bits &= bits - 1;
+                
+                double next = sum + val;
+                sumError += Math.abs(sum) >= Math.abs(val) ? (sum - next) + val : (val - next) + sum;
+                sum = next;
+                
+                double squared = val * val;
+                next = square + squared;
+                squareError += square >= squared ? (square - next) + squared : (squared - next) + square;
+                square = next;
+            }
+            
+            counts[w + 1] = count;
+            sums[w + 1] = sum;
+            sumErrors[w + 1] = sumError;
+            squares[w + 1] = square;
+            squareErrors[w + 1] = squareError;
+        }
+    }
+    
+    /*
+     * Statistics of the valid values in rows from (inclusive) to to
+     * (exclusive); the range is clipped to the column.
+     */
+    public Range range(int from, int to) {
+        from = Math.max(0, from);
+        to = Math.min(column.size(), to);
+        if (from >= to) {
+            return new Range(0, 0.0, 0.0, shift);
+        }
+        
+        int firstWhole = (from + 63) >>> 6;
+        int lastWhole = to >>> 6;
+        
+        if (firstWhole > lastWhole) {
+            Range range = new Range(0, 0.0, 0.0, shift);
+            addRows(range, from, to);
+            return range;
+        }
+        
+        Range range = new Range(
+            counts[lastWhole] - counts[firstWhole],
+            (sums[lastWhole] - sums[firstWhole]) + (sumErrors[lastWhole] - sumErrors[firstWhole]),
+            (squares[lastWhole] - squares[firstWhole]) + (squareErrors[lastWhole] - squareErrors[firstWhole]),
+            shift);
+        addRows(range, from, firstWhole << 6);
+        addRows(range, lastWhole << 6, to);
+        return range;
+    }
+    
+    /*
+     * Adds the valid rows of a range lying within one validity word.
+     */
+    private void addRows(Range range, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        
+        long bits = column.validityWord(from >>> 6);
+        bits &= -1L << (from & 63);
+        if ((to & 63) != 0) {
+            bits &= (1L << (to & 63)) - 1;
+        }
+        
+        int base = (from >>> 6) << 6;
+        while (bits != 0) {
+            double val = column.get(base + Long.numberOfTrailingZeros(bits)) - shift;
+            bits &= bits - 1;
+            range.count++;
+            range.shiftedSum += val;
+            range.shiftedSquares += val * val;
+        }
+    }
+    
+    public static final class Range {
+        
+        private int count;
+        private double shiftedSum;
+        private double shiftedSquares;
+        private final double shift;
+        
+        Range(int count, double shiftedSum, double shiftedSquares, double shift) {
+            this.count = count;
+            this.shiftedSum = shiftedSum;
+            this.shiftedSquares = shiftedSquares;
+            this.shift = shift;
+        }
+        
+        public int getCount() {
+            return count;
+        }
+        
+        public double getSum() {
+            return shiftedSum + count * shift;
+        }
+        
+        public double getMean() {
+            return count == 0 ? 0.0 : shift + shiftedSum / count;
+        }
+        
+        /*
+         * Sample variance, 0 for fewer than two values.
+         */
+        public double getVariance() {
+            if (count < 2) return 0.0;
+            double variance = (shiftedSquares - shiftedSum * shiftedSum / count) / (count - 1);
+            return Math.max(0.0, variance);
+        }
+        
+        public double getStandardDeviation() {
+            return Math.sqrt(getVariance());
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package analyzer;
+
+/**
+ * How much of the original record text DataModel keeps after loading.
+ *
+ * NONE keeps only the numeric columns. DICTIONARY keeps every field as an
+ * int code into a dictionary shared by all fields, so repeated values such
+ * as category names are stored once; it saves nothing on fields whose
+ * values are mostly unique. FULL keeps one String[] per record. NONE is
+ * the default for both DataModel and CSVLoader.
+ *
+ * @author Lukasz Golinski
+ */
+public enum RecordRetention {
+    NONE,
+    DICTIONARY,
+    FULL
+}
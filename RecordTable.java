@@ -0,0 +1,106 @@
+package analyzer;
+
+import java.util.*;
+
+/**
+ * Dictionary-encoded copy of the original records: one TextColumn per field
+ * position, all sharing one StringDictionary. Records may have different
+ * field counts; a record is rebuilt up to its last present field.
+ *
+ * @author Lukasz Golinski
+ */
+public class RecordTable {
+    
+    private StringDictionary dictionary;
+    private List<TextColumn> columns;
+    private int rowCount;
+    
+    public RecordTable() {
+        this.dictionary = new StringDictionary();
+        this.columns = new ArrayList<>();
+        this.rowCount = 0;
+    }
+    
+    public void addRecord(String[] record) {
+        ensureColumns(record.length);
+        
+        for (int i = 0; i < columns.size(); i++) {
+            columns.get(i).add(i < record.length ? dictionary.encode(record[i]) : TextColumn.NO_VALUE);
+        }
+        rowCount++;
+    }
+    
+    /*
+     * Appends the rows of another table, translating its codes into this
+     * table's dictionary one distinct value at a time.
+     */
+    public void addAll(RecordTable other) {
+        int[] translation = new int[other.dictionary.size()];
+        for (int code = 0; code < translation.length; code++) {
+            translation[code] = dictionary.encode(other.dictionary.decode(code));
+        }
+        
+        ensureColumns(other.columns.size());
+        
+        for (int i = 0; i < columns.size(); i++) {
+            TextColumn target = columns.get(i);
+            
+            if (i >= other.columns.size()) {
+                for (int row = 0; row < other.rowCount; row++) {
+                    target.add(TextColumn.NO_VALUE);
+                }
+                continue;
+            }
+            
+            TextColumn source = other.columns.get(i);
+            for (int row = 0; row < other.rowCount; row++) {
+                int code = source.get(row);
+                target.add(code == TextColumn.NO_VALUE ? code : translation[code]);
+            }
+        }
+        rowCount += other.rowCount;
+    }
+    
+    private void ensureColumns(int count) {
+        while (columns.size() < count) {
+            TextColumn column = new TextColumn();
+            for (int row = 0; row < rowCount; row++) {
+                column.add(TextColumn.NO_VALUE);
+            }
+            columns.add(column);
+        }
+    }
+    
+    public String[] getRecord(int row) {
+        int length = columns.size();
+        while (length > 0 && columns.get(length - 1).get(row) == TextColumn.NO_VALUE) {
+            length--;
+        }
+        
+        String[] record = new String[length];
+        for (int i = 0; i < length; i++) {
+            record[i] = dictionary.decode(columns.get(i).get(row));
+        }
+        return record;
+    }
+    
+    public String getValue(int row, int field) {
+        if (field >= columns.size()) return null;
+        int code = columns.get(field).get(row);
+        return code == TextColumn.NO_VALUE ? null : dictionary.decode(code);
+    }
+    
+    public int getRowCount() {
+        return rowCount;
+    }
+    
+    public int getDistinctValueCount() {
+        return dictionary.size();
+    }
+    
+    public void clear() {
+        dictionary.clear();
+        columns.clear();
+        rowCount = 0;
+    }
+}
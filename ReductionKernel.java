@@ -0,0 +1,103 @@
+package analyzer;
+
+/**
+ * The inner loops of the moment statistics over a dense block of values.
+ * Results are added to the caller's accumulator array, so a column can be
+ * fed through in blocks; the slots of each array are given by the constants
+ * below.
+ *
+ * The scalar kernel adds the values in order and is always available. The
+ * vector kernel uses jdk.incubator.vector and is only used when that module
+ * is present at run time (--add-modules jdk.incubator.vector); it adds in
+ * lanes, so its sums can differ from the scalar ones in the last bits.
+ * Setting the system property analyzer.vector to false keeps the scalar
+ * kernel as the default.
+ *
+ * @author Lukasz Golinski
+ */
+public interface ReductionKernel {
+    
+    int SUM = 0;
+    int SUM_OF_SQUARES = 1;
+    int MIN = 2;
+    int MAX = 3;
+    int LOG_SUM = 4;
+    int POSITIVE_COUNT = 5;
+    int RECIPROCAL_SUM = 6;
+    int NON_ZERO_COUNT = 7;
+    int RAW_SUMS = 8;
+    
+    int SQUARED_DIFF = 0;
+    int ABS_DIFF = 1;
+    int CUBED_DIFF = 2;
+    int FOURTH_DIFF = 3;
+    int DIFF = 4;
+    int CENTRAL_SUMS = 5;
+    
+    ReductionKernel SCALAR = new ScalarReductionKernel();
+    
+    /*
+     * Sum, sum of squares, minimum, maximum, the sum of logs and count of the
+     * positive values and the sum of reciprocals and count of the non-zero
+     * values.
+     */
+    void rawSums(double[] values, int from, int to, double[] sums);
+    
+    /*
+     * Sums of the first to fourth powers and of the absolute value of each
+     * value's deviation from the mean.
+     */
+    void centralSums(double[] values, int from, int to, double mean, double[] sums);
+    
+    double absDeviationSum(double[] values, int from, int to, double mean);
+    
+    static double[] newRawSums() {
+        double[] sums = new double[RAW_SUMS];
+        sums[MIN] = Double.POSITIVE_INFINITY;
+        sums[MAX] = Double.NEGATIVE_INFINITY;
+        return sums;
+    }
+    
+    /*
+     * The vector kernel, or null when the incubator module is not available
+     * or the hardware has no vector registers wider than one double.
+     */
+    static ReductionKernel vector() {
+        try {
+            return (ReductionKernel) Class.forName("analyzer.VectorReductionKernel")
+                .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            return null;
+        }
+    }
+    
+    /*
+     * Moves central sums taken about mean onto the mean corrected by their
+     * first-power sum, which is what a second pass would use, and returns
+     * that mean. A mean taken from the raw sum can be off in its last bits,
+     * and when the values sit far from zero the higher powers about it
+     * magnify that. The sum of absolute deviations is left as it is.
+     */
+    static double recenter(double[] sums, int count, double mean) {
+        double shift = sums[DIFF] / count;
+        double squared = sums[SQUARED_DIFF];
+        double cubed = sums[CUBED_DIFF];
+        double fourth = sums[FOURTH_DIFF];
+        double shiftSquared = shift * shift;
+        
+        sums[SQUARED_DIFF] = Math.max(0.0, squared - count * shiftSquared);
+        sums[CUBED_DIFF] = cubed - 3 * shift * squared + 2 * count * shiftSquared * shift;
+        sums[FOURTH_DIFF] = fourth - 4 * shift * cubed + 6 * shiftSquared * squared
+                          - 3 * count * shiftSquared * shiftSquared;
+        sums[DIFF] = 0.0;
+        return mean + shift;
+    }
+    
+    static ReductionKernel preferred() {
+        if (!Boolean.parseBoolean(System.getProperty("analyzer.vector", "true"))) {
+            return SCALAR;
+        }
+        ReductionKernel vector = vector();
+        return vector != null ? vector : SCALAR;
+    }
+}
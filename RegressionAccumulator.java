@@ -0,0 +1,364 @@
+package analyzer;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Mergeable sufficient statistics for a least-squares polynomial fit of y on
+ * x: the number of points, the sums of the powers of x up to twice the
+ * degree, the sums of y times each power of x up to the degree, and the sum
+ * of squares of y. The fit and its residual statistics follow from these
+ * alone, so a pair of columns is fitted in one pass; accumulators built over
+ * disjoint rows can be merged, which lets runs of rows be accumulated in
+ * parallel and data that keeps growing be refitted by adding only the new
+ * points.
+ *
+ * Each x is taken as (x - xShift) / xScale and each y as y - yShift before
+ * it enters the sums, which keeps the normal equations well conditioned. Two
+ * accumulators can only be merged when they use the same transform, so it
+ * is fixed when the accumulator is created; a shift near the middle of the
+ * data and a scale near its half-width will do.
+ *
+ * @author Lukasz Golinski
+ */
+public class RegressionAccumulator {
+    
+    public static final int MAX_DEGREE = 5;
+    
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final int LEAF_WORDS = 1 << 9;
+    private static final int BLOCK_WORDS = 1 << 4;
+    
+    private final int degree;
+    private final double xShift;
+    private final double xScale;
+    private final double inverseScale;
+    private final double yShift;
+    private final double[] powerSums;
+    private final double[] crossSums;
+    private double squareSum;
+    private long count;
+    
+    public RegressionAccumulator(int degree, double xShift, double xScale, double yShift) {
+        if (degree < 1 || degree > MAX_DEGREE) {
+            throw new IllegalArgumentException("Degree must be between 1 and " + MAX_DEGREE + ": " + degree);
+        }
+        
+        this.degree = degree;
+        this.xShift = Double.isFinite(xShift) ? xShift : 0.0;
+        this.xScale = Double.isFinite(xScale) && xScale > 0 ? xScale : 1.0;
+        this.inverseScale = 1.0 / this.xScale;
+        this.yShift = Double.isFinite(yShift) ? yShift : 0.0;
+        this.powerSums = new double[2 * degree + 1];
+        this.crossSums = new double[degree + 1];
+    }
+    
+    /*
+     * Accumulates y against x over the rows where both columns have a value,
+     * or against the row number when x is null. Large columns are split into
+     * runs of bitmap words on the common fork/join pool.
+     */
+    public static RegressionAccumulator of(ColumnView x, ColumnView y, int degree,
+                                           double xShift, double xScale, double yShift,
+                                           boolean parallel) {
+        RegressionAccumulator empty = new RegressionAccumulator(degree, xShift, xScale, yShift);
+        int words = y.wordCount();
+        
+        if (parallel && y.size() >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            return ForkJoinPool.commonPool().invoke(new AccumulateTask(empty, x, y, 0, words));
+        }
+        return new AccumulateTask(empty, x, y, 0, words).sequential();
+    }
+    
+    /*
+     * Column y of the model against column x, shifted and scaled by the
+     * statistics the loader has already gathered for them.
+     */
+    public static RegressionAccumulator of(DataModel model, String xColumn, String yColumn,
+                                           int degree, boolean parallel) {
+        RunningStatistics xStats = model.getColumnStatistics(xColumn);
+        RunningStatistics yStats = model.getColumnStatistics(yColumn);
+        
+        double xMean = xStats.getMean();
+        double halfWidth = Math.max(xStats.getMaximum() - xMean, xMean - xStats.getMinimum());
+        
+        return of(model.getColumn(xColumn), model.getColumn(yColumn), degree,
+                  xMean, halfWidth, yStats.getMean(), parallel);
+    }
+    
+    /*
+     * The values against their position in the view, shifted by the middle
+     * position and by the given mean of the values. Reads nothing but the
+     * view, so it can run on any thread while the view stays open.
+     */
+    public static RegressionAccumulator ofIndex(ColumnView values, int degree, double mean, boolean parallel) {
+        double middle = (values.size() - 1) / 2.0;
+        return of(null, values, degree, middle, Math.max(1.0, middle), mean, parallel);
+    }
+    
+    public void add(double x, double y) {
+        if (Double.isNaN(x) || Double.isNaN(y)) {
+            return;
+        }
+        
+        double u = (x - xShift) * inverseScale;
+        double v = y - yShift;
+        double power = 1.0;
+        
+        for (int k = 0; k < powerSums.length; k++) {
+            powerSums[k] += power;
+            if (k <= degree) {
+                crossSums[k] += power * v;
+            }
+            power *= u;
+        }
+        
+        squareSum += v * v;
+        count++;
+    }
+    
+    /*
+     * Adds n points held in two arrays. Used for the dense blocks gathered
+     * from the columns; the straight line gets a loop of its own.
+     */
+    private void addBlock(double[] xs, double[] ys, int n) {
+        if (degree == 1) {
+            double su = 0.0, suu = 0.0, sv = 0.0, suv = 0.0, svv = 0.0;
+            for (int i = 0; i < n; i++) {
+                double u = (xs[i] - xShift) * inverseScale;
+                double v = ys[i] - yShift;
+                su += u;
+                suu += u * u;
+                sv += v;
+                suv += u * v;
+                svv += v * v;
+            }
+            powerSums[0] += n;
+            powerSums[1] += su;
+            powerSums[2] += suu;
+            crossSums[0] += sv;
+            crossSums[1] += suv;
+            squareSum += svv;
+            count += n;
+            return;
+        }
+        
+        double[] powers = new double[powerSums.length];
+        double[] cross = new double[crossSums.length];
+        double svv = 0.0;
+        
+        for (int i = 0; i < n; i++) {
+            double u = (xs[i] - xShift) * inverseScale;
+            double v = ys[i] - yShift;
+            double power = 1.0;
+            for (int k = 0; k <= degree; k++) {
+                powers[k] += power;
+                cross[k] += power * v;
+                power *= u;
+            }
+            for (int k = degree + 1; k < powers.length; k++) {
+                powers[k] += power;
+                power *= u;
+            }
+            svv += v * v;
+        }
+        
+        for (int k = 0; k < powers.length; k++) {
+            powerSums[k] += powers[k];
+        }
+        for (int k = 0; k < cross.length; k++) {
+            crossSums[k] += cross[k];
+        }
+        squareSum += svv;
+        count += n;
+    }
+    
+    public void merge(RegressionAccumulator other) {
+        if (other.degree != degree || other.xShift != xShift
+                || other.xScale != xScale || other.yShift != yShift) {
+            throw new IllegalArgumentException("Accumulators of different fits cannot be merged");
+        }
+        
+        for (int k = 0; k < powerSums.length; k++) {
+            powerSums[k] += other.powerSums[k];
+        }
+        for (int k = 0; k < crossSums.length; k++) {
+            crossSums[k] += other.crossSums[k];
+        }
+        squareSum += other.squareSum;
+        count += other.count;
+    }
+    
+    public int getDegree() {
+        return degree;
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    public RegressionAccumulator copy() {
+        RegressionAccumulator copy = new RegressionAccumulator(degree, xShift, xScale, yShift);
+        copy.merge(this);
+        return copy;
+    }
+    
+    /*
+     * Solves the normal equations by Gaussian elimination with partial
+     * pivoting. With no more points than coefficients, or when x takes
+     * fewer distinct values than that, the fit is undefined and every
+     * coefficient is NaN.
+     */
+    public RegressionFit fit() {
+        int size = degree + 1;
+        double[] coefficients = new double[size];
+        
+        if (count <= degree || !solve(coefficients)) {
+            Arrays.fill(coefficients, Double.NaN);
+            return new RegressionFit(coefficients, xShift, xScale, yShift, count,
+                                     Double.NaN, Double.NaN, Double.NaN);
+        }
+        
+        double n = count;
+        double explained = 0.0;
+        for (int k = 0; k < size; k++) {
+            explained += coefficients[k] * crossSums[k];
+        }
+        
+        double totalSquares = Math.max(0.0, squareSum - crossSums[0] * crossSums[0] / n);
+        double residualSquares = Math.min(totalSquares, Math.max(0.0, squareSum - explained));
+        double xSpread = Math.max(0.0, powerSums[2] - powerSums[1] * powerSums[1] / n) * xScale * xScale;
+        
+        return new RegressionFit(coefficients, xShift, xScale, yShift, count,
+                                 residualSquares, totalSquares, xSpread);
+    }
+    
+    private boolean solve(double[] solution) {
+        int size = solution.length;
+        double[][] matrix = new double[size][size + 1];
+        double largest = 0.0;
+        
+        for (int j = 0; j < size; j++) {
+            for (int k = 0; k < size; k++) {
+                matrix[j][k] = powerSums[j + k];
+            }
+            matrix[j][size] = crossSums[j];
+            largest = Math.max(largest, matrix[j][j]);
+        }
+        
+        double tolerance = largest * 1e-12;
+        
+        for (int col = 0; col < size; col++) {
+            int pivot = col;
+            for (int row = col + 1; row < size; row++) {
+                if (Math.abs(matrix[row][col]) > Math.abs(matrix[pivot][col])) {
+                    pivot = row;
+                }
+            }
+            if (!(Math.abs(matrix[pivot][col]) > tolerance)) {
+                return false;
+            }
+            
+            double[] swap = matrix[col];
+            matrix[col] = matrix[pivot];
+            matrix[pivot] = swap;
+            
+            for (int row = col + 1; row < size; row++) {
+                double factor = matrix[row][col] / matrix[col][col];
+                for (int k = col; k <= size; k++) {
+                    matrix[row][k] -= factor * matrix[col][k];
+                }
+            }
+        }
+        
+        for (int row = size - 1; row >= 0; row--) {
+            double value = matrix[row][size];
+            for (int k = row + 1; k < size; k++) {
+                value -= matrix[row][k] * solution[k];
+            }
+            solution[row] = value / matrix[row][row];
+        }
+        
+        return true;
+    }
+    
+    private static final class AccumulateTask extends RecursiveTask<RegressionAccumulator> {
+        
+        private final RegressionAccumulator empty;
+        private final ColumnView x;
+        private final ColumnView y;
+        private final int fromWord;
+        private final int toWord;
+        
+        AccumulateTask(RegressionAccumulator empty, ColumnView x, ColumnView y, int fromWord, int toWord) {
+            this.empty = empty;
+            this.x = x;
+            this.y = y;
+            this.fromWord = fromWord;
+            this.toWord = toWord;
+        }
+        
+        /*
+         * Gathers the rows where both columns have a value into small dense
+         * blocks, copying fully valid words in bulk, and adds each block.
+         */
+        RegressionAccumulator sequential() {
+            RegressionAccumulator sums = empty.copy();
+            int capacity = BLOCK_WORDS << 6;
+            double[] xs = new double[capacity];
+            double[] ys = new double[capacity];
+            int n = 0;
+            
+            for (int w = fromWord; w < toWord; w++) {
+                long bits = y.validityWord(w);
+                if (x != null) {
+                    bits &= x.validityWord(w);
+                }
+                int base = w << 6;
+                
+                if (bits == -1L) {
+                    y.copyTo(base, ys, n, 64);
+                    if (x != null) {
+                        x.copyTo(base, xs, n, 64);
+                    } else {
+                        for (int i = 0; i < 64; i++) {
+                            xs[n + i] = base + i;
+                        }
+                    }
+                    n += 64;
+                } else {
+                    while (bits != 0) {
+                        int row = base + Long.numberOfTrailingZeros(bits);
+                        xs[n] = x != null ? x.get(row) : row;
+                        ys[n] = y.get(row);
+                        n++;
+                        bits &= bits - 1;
+                    }
+                }
+                
+                if (n > capacity - 64) {
+                    sums.addBlock(xs, ys, n);
+                    n = 0;
+                }
+            }
+            
+            sums.addBlock(xs, ys, n);
+            return sums;
+        }
+        
+        @Override
+        protected RegressionAccumulator compute() {
+            if (toWord - fromWord <= LEAF_WORDS) {
+                return sequential();
+            }
+            
+            int middle = (fromWord + toWord) >>> 1;
+            AccumulateTask right = new AccumulateTask(empty, x, y, middle, toWord);
+            right.fork();
+            RegressionAccumulator left = new AccumulateTask(empty, x, y, fromWord, middle).compute();
+            left.merge(right.join());
+            return left;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package analyzer;
+
+import java.text.DecimalFormat;
+
+/**
+ * A least-squares polynomial fitted by a RegressionAccumulator, with the
+ * goodness-of-fit and residual statistics that follow from the same sums.
+ * The coefficients are kept for the shifted and scaled x the fit was solved
+ * in, and predict evaluates them there; getCoefficient converts them back
+ * to the original units. When the fit is undefined every coefficient and
+ * statistic is NaN.
+ *
+ * @author Lukasz Golinski
+ */
+public class RegressionFit {
+    
+    private final double[] coefficients;
+    private final double xShift;
+    private final double xScale;
+    private final double yShift;
+    private final long count;
+    private final double residualSquares;
+    private final double totalSquares;
+    private final double xSpread;
+    private double[] originalCoefficients;
+    
+    RegressionFit(double[] coefficients, double xShift, double xScale, double yShift, long count,
+                  double residualSquares, double totalSquares, double xSpread) {
+        this.coefficients = coefficients;
+        this.xShift = xShift;
+        this.xScale = xScale;
+        this.yShift = yShift;
+        this.count = count;
+        this.residualSquares = residualSquares;
+        this.totalSquares = totalSquares;
+        this.xSpread = xSpread;
+    }
+    
+    public boolean isDefined() {
+        return !Double.isNaN(coefficients[0]);
+    }
+    
+    public int getDegree() {
+        return coefficients.length - 1;
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    public double predict(double x) {
+        double u = (x - xShift) / xScale;
+        double value = 0.0;
+        for (int k = coefficients.length - 1; k >= 0; k--) {
+            value = value * u + coefficients[k];
+        }
+        return value + yShift;
+    }
+    
+    /*
+     * The coefficient of x to the given power in the original units. For
+     * high degrees and an x far from zero the conversion loses precision
+     * that predict keeps.
+     */
+    public double getCoefficient(int power) {
+        if (originalCoefficients == null) {
+            originalCoefficients = toOriginalUnits();
+        }
+        return originalCoefficients[power];
+    }
+    
+    private double[] toOriginalUnits() {
+        int size = coefficients.length;
+        double[] result = new double[size];
+        
+        /* Expands each b_k ((x - s) / c)^k with the binomial theorem */
+        for (int k = 0; k < size; k++) {
+            double factor = coefficients[k] / Math.pow(xScale, k);
+            double binomial = 1.0;
+            for (int j = k; j >= 0; j--) {
+                result[j] += factor * binomial * Math.pow(-xShift, k - j);
+                binomial = binomial * j / (k - j + 1);
+            }
+        }
+        
+        result[0] += yShift;
+        return result;
+    }
+    
+    public double getIntercept() {
+        return getCoefficient(0);
+    }
+    
+    public double getSlope() {
+        return getCoefficient(1);
+    }
+    
+    public double getRSquared() {
+        if (!(totalSquares > 0)) return Double.NaN;
+        return 1.0 - residualSquares / totalSquares;
+    }
+    
+    public double getAdjustedRSquared() {
+        long freedom = count - coefficients.length;
+        if (freedom <= 0) return Double.NaN;
+        return 1.0 - (1.0 - getRSquared()) * (count - 1) / freedom;
+    }
+    
+    public double getResidualSumOfSquares() {
+        return residualSquares;
+    }
+    
+    public double getTotalSumOfSquares() {
+        return totalSquares;
+    }
+    
+    public double getResidualStandardError() {
+        long freedom = count - coefficients.length;
+        if (freedom <= 0) return Double.NaN;
+        return Math.sqrt(residualSquares / freedom);
+    }
+    
+    public double getRootMeanSquareError() {
+        if (count == 0) return Double.NaN;
+        return Math.sqrt(residualSquares / count);
+    }
+    
+    /*
+     * Only defined for a straight line.
+     */
+    public double getSlopeStandardError() {
+        if (coefficients.length != 2 || !(xSpread > 0)) return Double.NaN;
+        return getResidualStandardError() / Math.sqrt(xSpread);
+    }
+    
+    /*
+     * The polynomial written out, highest power first, such as
+     * y = 0.52x^2 - 3.1x + 12.
+     */
+    public String getEquation() {
+        if (!isDefined()) {
+            return "y undefined";
+        }
+        
+        StringBuilder equation = new StringBuilder("y =");
+        boolean first = true;
+        
+        for (int k = coefficients.length - 1; k >= 0; k--) {
+            double value = getCoefficient(k);
+            if (value == 0 && k > 0) {
+                continue;
+            }
+            
+            if (first) {
+                equation.append(value < 0 ? " -" : " ");
+            } else {
+                equation.append(value < 0 ? " - " : " + ");
+            }
+            first = false;
+            
+            equation.append(format(Math.abs(value)));
+            if (k > 0) {
+                equation.append('x');
+            }
+            if (k == 2) {
+                equation.append('\u00b2');
+            } else if (k == 3) {
+                equation.append('\u00b3');
+            } else if (k > 3) {
+                equation.append('^').append(k);
+            }
+        }
+        
+        return equation.toString();
+    }
+    
+    private static String format(double value) {
+        if (value != 0 && (value >= 1e6 || value < 1e-3)) {
+            return new DecimalFormat("0.###E0").format(value);
+        }
+        return new DecimalFormat("0.####").format(value);
+    }
+}
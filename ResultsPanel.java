@@ -6,22 +6,61 @@ import javax.swing.table.*;
 import java.awt.*;
 import java.text.DecimalFormat;
 import java.util.*;
+import java.util.function.Predicate;
 
 /**
  * @author Lukasz Golinski
  */
 public class ResultsPanel extends JPanel {
     
+    /* Category, label and getFullAnalysis key of every row, in table order */
+    private static final String[][] ROWS = {
+        {"Basic Stats", "Count", "Count"},
+        {"Basic Stats", "Sum", "Sum"},
+        {"Basic Stats", "Minimum", "Minimum"},
+        {"Basic Stats", "Maximum", "Maximum"},
+        {"Basic Stats", "Range", "Range"},
+        {"Central Tendency", "Arithmetic Mean", "Mean"},
+        {"Central Tendency", "Median", "Median"},
+        {"Central Tendency", "Mode", "Mode"},
+        {"Central Tendency", "Mode Frequency", "Mode Frequency"},
+        {"Central Tendency", "Geometric Mean", "Geometric Mean"},
+        {"Central Tendency", "Harmonic Mean", "Harmonic Mean"},
+        {"Dispersion", "Variance (Sample)", "Variance (Sample)"},
+        {"Dispersion", "Variance (Population)", "Variance (Population)"},
+        {"Dispersion", "Std Dev (Sample)", "Std Dev (Sample)"},
+        {"Dispersion", "Std Dev (Population)", "Std Dev (Population)"},
+        {"Dispersion", "Standard Error", "Standard Error"},
+        {"Dispersion", "Coeff of Variation %", "Coeff of Variation %"},
+        {"Dispersion", "Mean Abs Deviation", "Mean Abs Deviation"},
+        {"Quartiles", "Q1 (25th Percentile)", "Quartile 1 (25%)"},
+        {"Quartiles", "Q2 (50th Percentile)", "Quartile 2 (50%)"},
+        {"Quartiles", "Q3 (75th Percentile)", "Quartile 3 (75%)"},
+        {"Quartiles", "Interquartile Range", "Interquartile Range"},
+        {"Quartiles", "10th Percentile", "10th Percentile"},
+        {"Quartiles", "90th Percentile", "90th Percentile"},
+        {"Distribution Shape", "Skewness", "Skewness"},
+        {"Distribution Shape", "Kurtosis", "Kurtosis"},
+        {"Additional", "Root Mean Square", "Root Mean Square"},
+        {"Additional", "Sum of Squares", "Sum of Squares"},
+        {"Additional", "Outliers (IQR)", "Outliers (IQR method)"},
+        {"Additional", "Outliers (Z > 2)", "Outliers (Z > 2)"}
+    };
+    
+    private static final String PENDING = "\u2026";
+    
     private JTable resultsTable;
     private DefaultTableModel tableModel;
     private JLabel statusLabel;
     private JTextArea interpretationArea;
     private DecimalFormat primaryFormatter;
     private DecimalFormat scientificFormatter;
+    private Map<String, Integer> rowIndexes;
     
     public ResultsPanel() {
         primaryFormatter = new DecimalFormat("#,##0.######");
         scientificFormatter = new DecimalFormat("0.####E0");
+        rowIndexes = new HashMap<>();
         
         setLayout(new BorderLayout(10, 10));
         setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
@@ -106,59 +145,80 @@ public class ResultsPanel extends JPanel {
     }
     
     public void displayResults(StatisticsEngine engine, String columnName) {
-        tableModel.setRowCount(0);
-        
         if (!engine.hasData()) {
+            tableModel.setRowCount(0);
             statusLabel.setText("No data available");
             interpretationArea.setText("No data to analyze.");
             return;
         }
         
-        Map<String, Double> results = engine.getFullAnalysis();
-        
-        addCategoryRow("Basic Stats", "Count", formatValue(results.get("Count")));
-        addCategoryRow("Basic Stats", "Sum", formatValue(results.get("Sum")));
-        addCategoryRow("Basic Stats", "Minimum", formatValue(results.get("Minimum")));
-        addCategoryRow("Basic Stats", "Maximum", formatValue(results.get("Maximum")));
-        addCategoryRow("Basic Stats", "Range", formatValue(results.get("Range")));
-        
-        addCategoryRow("Central Tendency", "Arithmetic Mean", formatValue(results.get("Mean")));
-        addCategoryRow("Central Tendency", "Median", formatValue(results.get("Median")));
-        addCategoryRow("Central Tendency", "Mode", formatValue(results.get("Mode")));
-        addCategoryRow("Central Tendency", "Mode Frequency", formatValue(results.get("Mode Frequency")));
-        addCategoryRow("Central Tendency", "Geometric Mean", formatValue(results.get("Geometric Mean")));
-        addCategoryRow("Central Tendency", "Harmonic Mean", formatValue(results.get("Harmonic Mean")));
-        
-        addCategoryRow("Dispersion", "Variance (Sample)", formatValue(results.get("Variance (Sample)")));
-        addCategoryRow("Dispersion", "Variance (Population)", formatValue(results.get("Variance (Population)")));
-        addCategoryRow("Dispersion", "Std Dev (Sample)", formatValue(results.get("Std Dev (Sample)")));
-        addCategoryRow("Dispersion", "Std Dev (Population)", formatValue(results.get("Std Dev (Population)")));
-        addCategoryRow("Dispersion", "Standard Error", formatValue(results.get("Standard Error")));
-        addCategoryRow("Dispersion", "Coeff of Variation %", formatValue(results.get("Coeff of Variation %")));
-        addCategoryRow("Dispersion", "Mean Abs Deviation", formatValue(results.get("Mean Abs Deviation")));
-        
-        addCategoryRow("Quartiles", "Q1 (25th Percentile)", formatValue(results.get("Quartile 1 (25%)")));
-        addCategoryRow("Quartiles", "Q2 (50th Percentile)", formatValue(results.get("Quartile 2 (50%)")));
-        addCategoryRow("Quartiles", "Q3 (75th Percentile)", formatValue(results.get("Quartile 3 (75%)")));
-        addCategoryRow("Quartiles", "Interquartile Range", formatValue(results.get("Interquartile Range")));
-        addCategoryRow("Quartiles", "10th Percentile", formatValue(results.get("10th Percentile")));
-        addCategoryRow("Quartiles", "90th Percentile", formatValue(results.get("90th Percentile")));
-        
-        addCategoryRow("Distribution Shape", "Skewness", formatValue(results.get("Skewness")));
-        addCategoryRow("Distribution Shape", "Kurtosis", formatValue(results.get("Kurtosis")));
-        
-        addCategoryRow("Additional", "Root Mean Square", formatValue(results.get("Root Mean Square")));
-        addCategoryRow("Additional", "Sum of Squares", formatValue(results.get("Sum of Squares")));
-        addCategoryRow("Additional", "Outliers (IQR)", formatValue(results.get("Outliers (IQR method)")));
-        addCategoryRow("Additional", "Outliers (Z > 2)", formatValue(results.get("Outliers (Z > 2)")));
-        
-        statusLabel.setText("Analyzing: " + columnName + " (" + engine.getCount() + " values)");
-        
-        updateInterpretation(engine, results, columnName);
+        displayResults(ColumnAnalysis.of(columnName, engine));
+    }
+    
+    /*
+     * Shows the column with every statistic pending, so the tiers of an
+     * analysis in progress can fill the rows in as they arrive.
+     */
+    public void beginResults(String columnName, int count) {
+        ensureRows();
+        
+        for (int row = 0; row < tableModel.getRowCount(); row++) {
+            tableModel.setValueAt(PENDING, row, 2);
+        }
+        
+        statusLabel.setText("Analyzing: " + columnName + " (" + count + " values) - calculating...");
+        interpretationArea.setText("Calculating...");
+    }
+    
+    /*
+     * Sets the rows of the given statistics in place; rows of statistics not
+     * in the map keep their current value.
+     */
+    public void updateResults(Map<String, Double> results, Predicate<String> approximate) {
+        ensureRows();
+        
+        for (Map.Entry<String, Double> entry : results.entrySet()) {
+            Integer row = rowIndexes.get(entry.getKey());
+            if (row != null) {
+                String formatted = formatResult(entry.getValue(), approximate.test(entry.getKey()));
+                if (!formatted.equals(tableModel.getValueAt(row, 2))) {
+                    tableModel.setValueAt(formatted, row, 2);
+                }
+            }
+        }
+    }
+    
+    public void displayResults(ColumnAnalysis analysis) {
+        String columnName = analysis.getColumnName();
+        Map<String, Double> results = analysis.getResults();
+        
+        updateResults(results, analysis::isApproximate);
+        
+        statusLabel.setText("Analyzing: " + columnName + " (" + analysis.getCount() + " values)" +
+                           (analysis.usesApproximateQuantiles() ? " - quantiles approximate" : ""));
+        
+        updateInterpretation(analysis, results, columnName);
+    }
+    
+    private void ensureRows() {
+        if (tableModel.getRowCount() == ROWS.length) {
+            return;
+        }
+        
+        tableModel.setRowCount(0);
+        rowIndexes.clear();
+        for (String[] row : ROWS) {
+            rowIndexes.put(row[2], tableModel.getRowCount());
+            tableModel.addRow(new Object[]{row[0], row[1], ""});
+        }
     }
     
-    private void addCategoryRow(String category, String statistic, String value) {
-        tableModel.addRow(new Object[]{category, statistic, value});
+    /*
+     * Estimated statistics are prefixed with an approximately-equal sign.
+     */
+    private String formatResult(Double value, boolean approximate) {
+        String formatted = formatValue(value);
+        return approximate ? "\u2248 " + formatted : formatted;
     }
     
     private String formatValue(Double value) {
@@ -179,7 +239,7 @@ public class ResultsPanel extends JPanel {
         }
     }
     
-    private void updateInterpretation(StatisticsEngine engine, Map<String, Double> results, String columnName) {
+    private void updateInterpretation(ColumnAnalysis analysis, Map<String, Double> results, String columnName) {
         StringBuilder sb = new StringBuilder();
         
         sb.append("Column '").append(columnName).append("' Analysis:\n\n");
@@ -206,8 +266,8 @@ public class ResultsPanel extends JPanel {
         }
         sb.append(".\n");
         
-        sb.append("• Distribution: ").append(engine.getSkewnessInterpretation());
-        sb.append(", ").append(engine.getKurtosisInterpretation()).append(".\n");
+        sb.append("• Distribution: ").append(analysis.getSkewnessInterpretation());
+        sb.append(", ").append(analysis.getKurtosisInterpretation()).append(".\n");
         
         int outliers = results.get("Outliers (IQR method)").intValue();
         if (outliers > 0) {
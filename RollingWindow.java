@@ -0,0 +1,273 @@
+package analyzer;
+
+/**
+ * Statistics over every window of a fixed number of consecutive values,
+ * each in one pass over the series. Element i of every result describes the
+ * values i to i + window - 1, so results have size - window + 1 elements,
+ * as the moving averages do.
+ *
+ * Sums are slid by adding the value that enters and removing the one that
+ * leaves, and are recomputed from scratch once every window steps so that
+ * rounding errors cannot build up over long series; this keeps the cost
+ * linear in the length of the series whatever the window.
+ *
+ * @author Lukasz Golinski
+ */
+public class RollingWindow {
+    
+    private final ColumnView values;
+    private final int window;
+    private final int resultSize;
+    
+    public RollingWindow(ColumnView values, int window) {
+        if (window <= 0 || window > values.size()) {
+            throw new IllegalArgumentException("Window must be between 1 and " + values.size() + ": " + window);
+        }
+        this.values = values;
+        this.window = window;
+        this.resultSize = values.size() - window + 1;
+    }
+    
+    public int getWindow() {
+        return window;
+    }
+    
+    public int getResultSize() {
+        return resultSize;
+    }
+    
+    public double[] sum() {
+        double[] sums = new double[resultSize];
+        int resync = 0;
+        double windowSum = 0.0;
+        
+        for (int i = 0; i < resultSize; i++) {
+            if (i == resync) {
+                resync += window;
+                windowSum = sumOf(i);
+            } else {
+                windowSum += values.get(i + window - 1) - values.get(i - 1);
+            }
+            sums[i] = windowSum;
+        }
+        
+        return sums;
+    }
+    
+    public double[] mean() {
+        double[] means = sum();
+        for (int i = 0; i < resultSize; i++) {
+            means[i] /= window;
+        }
+        return means;
+    }
+    
+    /*
+     * Linearly weighted mean, the oldest value weighing 1 and the newest
+     * window. Moving on by one value takes every weight down by one, which
+     * removes the plain sum of the old window, and adds the new value at the
+     * full weight.
+     */
+    public double[] weightedMean() {
+        double[] means = new double[resultSize];
+        int resync = 0;
+        double weightSum = window * (window + 1.0) / 2;
+        double windowSum = 0.0;
+        double weightedSum = 0.0;
+        
+        for (int i = 0; i < resultSize; i++) {
+            if (i == resync) {
+                resync += window;
+                windowSum = 0.0;
+                weightedSum = 0.0;
+                for (int j = 0; j < window; j++) {
+                    double val = values.get(i + j);
+                    windowSum += val;
+                    weightedSum += val * (j + 1);
+                }
+            } else {
+                double entering = values.get(i + window - 1);
+                weightedSum += window * entering - windowSum;
+                windowSum += entering - values.get(i - 1);
+            }
+            means[i] = weightedSum / weightSum;
+        }
+        
+        return means;
+    }
+    
+    /*
+     * Sample variance of each window, with Welford's update for replacing one
+     * value by another. A window of one value has variance 0.
+     */
+    public double[] variance() {
+        double[] variances = new double[resultSize];
+        int resync = 0;
+        double mean = 0.0;
+        double m2 = 0.0;
+        
+        for (int i = 0; i < resultSize; i++) {
+            if (i == resync) {
+                resync += window;
+                mean = sumOf(i) / window;
+                m2 = 0.0;
+                for (int j = i; j < i + window; j++) {
+                    double diff = values.get(j) - mean;
+                    m2 += diff * diff;
+                }
+            } else {
+                double leaving = values.get(i - 1);
+                double entering = values.get(i + window - 1);
+                double previousMean = mean;
+                mean += (entering - leaving) / window;
+                m2 += (entering - leaving) * (entering - mean + leaving - previousMean);
+                if (m2 < 0) m2 = 0.0;
+            }
+            variances[i] = window > 1 ? m2 / (window - 1) : 0.0;
+        }
+        
+        return variances;
+    }
+    
+    public double[] standardDeviation() {
+        double[] deviations = variance();
+        for (int i = 0; i < resultSize; i++) {
+            deviations[i] = Math.sqrt(deviations[i]);
+        }
+        return deviations;
+    }
+    
+    public double[] minimum() {
+        return extreme(true);
+    }
+    
+    public double[] maximum() {
+        return extreme(false);
+    }
+    
+    /*
+     * Keeps the indices of the values that can still become the window's
+     * extreme in a ring buffer, in order of position, with their values
+     * monotonic from the front. Each index is added and removed once.
+     */
+    private double[] extreme(boolean minimum) {
+        double[] extremes = new double[resultSize];
+        int[] deque = new int[window];
+        double[] dequeValues = new double[window];
+        int head = 0;
+        int tail = 0;
+        int count = 0;
+        
+        for (int i = 0; i < values.size(); i++) {
+            int start = i - window + 1;
+            if (count > 0 && deque[head] < start) {
+                head = head + 1 == window ? 0 : head + 1;
+                count--;
+            }
+            
+            double val = values.get(i);
+            while (count > 0) {
+                int last = tail == 0 ? window - 1 : tail - 1;
+                if (minimum ? dequeValues[last] < val : dequeValues[last] > val) break;
+                tail = last;
+                count--;
+            }
+            deque[tail] = i;
+            dequeValues[tail] = val;
+            tail = tail + 1 == window ? 0 : tail + 1;
+            count++;
+            
+            if (start >= 0) {
+                extremes[start] = dequeValues[head];
+            }
+        }
+        
+        return extremes;
+    }
+    
+    public double[] median() {
+        return quantile(0.5);
+    }
+    
+    /*
+     * The quantile of each window at the given fraction, interpolated between
+     * neighbouring ranks the same way StatisticsEngine.getPercentile is, in
+     * O(log window) per step; see SlidingQuantile.
+     */
+    public double[] quantile(double fraction) {
+        double position = fraction * (window - 1);
+        int rank = (int) Math.floor(position);
+        double weight = position - rank;
+        
+        double[] initial = new double[window];
+        values.copyTo(0, initial, 0, window);
+        SlidingQuantile order = new SlidingQuantile(initial, rank);
+        
+        double[] quantiles = new double[resultSize];
+        int slot = 0;
+        
+        for (int i = 0; i < resultSize; i++) {
+            if (i > 0) {
+                order.replace(slot, values.get(i + window - 1));
+                slot = slot + 1 == window ? 0 : slot + 1;
+            }
+            double lower = order.lower();
+            quantiles[i] = weight == 0 ? lower : lower + weight * (order.upper() - lower);
+        }
+        
+        return quantiles;
+    }
+    
+    /*
+     * Bollinger bands: the moving average and the average plus and minus
+     * width population standard deviations of the window.
+     */
+    public Bands bollingerBands(double width) {
+        double[] middle = mean();
+        double[] variances = variance();
+        double[] upper = new double[resultSize];
+        double[] lower = new double[resultSize];
+        double toPopulation = window > 1 ? (window - 1) / (double) window : 0.0;
+        
+        for (int i = 0; i < resultSize; i++) {
+            double spread = width * Math.sqrt(variances[i] * toPopulation);
+            upper[i] = middle[i] + spread;
+            lower[i] = middle[i] - spread;
+        }
+        
+        return new Bands(lower, middle, upper);
+    }
+    
+    private double sumOf(int from) {
+        double sum = 0.0;
+        for (int j = from; j < from + window; j++) {
+            sum += values.get(j);
+        }
+        return sum;
+    }
+    
+    public static final class Bands {
+        
+        private final double[] lower;
+        private final double[] middle;
+        private final double[] upper;
+        
+        Bands(double[] lower, double[] middle, double[] upper) {
+            this.lower = lower;
+            this.middle = middle;
+            this.upper = upper;
+        }
+        
+        public double[] getLower() {
+            return lower;
+        }
+        
+        public double[] getMiddle() {
+            return middle;
+        }
+        
+        public double[] getUpper() {
+            return upper;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package analyzer;
+
+/**
+ * Mergeable accumulator for count, mean, the second to fourth central
+ * moments and the raw sums the engine reports. Values can be added one at a
+ * time, and two accumulators built over disjoint parts of a column can be
+ * combined; updates and merges use the formulas of Welford, Chan et al. and
+ * Pebay, which stay accurate when the mean is large compared to the spread.
+ *
+ * @author Lukasz Golinski
+ */
+public class RunningStatistics {
+    
+    private long count;
+    private double mean;
+    private double m2;
+    private double m3;
+    private double m4;
+    private double min;
+    private double max;
+    private double sum;
+    private double sumOfSquares;
+    private double logSum;
+    private long positiveCount;
+    private double reciprocalSum;
+    private long nonZeroCount;
+    
+    public RunningStatistics() {
+        this.min = Double.POSITIVE_INFINITY;
+        this.max = Double.NEGATIVE_INFINITY;
+    }
+    
+    public void add(double value) {
+        long previous = count;
+        count++;
+        
+        double delta = value - mean;
+        double deltaN = delta / count;
+        double deltaN2 = deltaN * deltaN;
+        double term = delta * deltaN * previous;
+        
+        mean += deltaN;
+        m4 += term * deltaN2 * ((double) count * count - 3 * count + 3) + 6 * deltaN2 * m2 - 4 * deltaN * m3;
+        m3 += term * deltaN * (count - 2) - 3 * deltaN * m2;
+        m2 += term;
+        
+        addRaw(value);
+    }
+    
+    public void append(double[] values) {
+        append(values, values.length);
+    }
+    
+    /*
+     * Adds a batch of values, skipping NaN, by accumulating the batch on its
+     * own and merging it in.
+     */
+    public void append(double[] values, int count) {
+        merge(of(values, count));
+    }
+    
+    public static RunningStatistics of(double[] values, int count) {
+        RunningStatistics stats = new RunningStatistics();
+        
+        for (int i = 0; i < count; i++) {
+            double val = values[i];
+            if (val == val) {
+                stats.count++;
+                stats.addRaw(val);
+            }
+        }
+        
+        if (stats.count == 0) {
+            return stats;
+        }
+        
+        double blockMean = stats.sum / stats.count;
+        
+        for (int i = 0; i < count; i++) {
+            double val = values[i];
+            if (val == val) {
+                double diff = val - blockMean;
+                double squared = diff * diff;
+                stats.m2 += squared;
+                stats.m3 += squared * diff;
+                stats.m4 += squared * squared;
+            }
+        }
+        
+        stats.mean = blockMean;
+        return stats;
+    }
+    
+    public static RunningStatistics of(ColumnView column, int fromWord, int toWord) {
+        return of(column, fromWord, toWord, ReductionKernel.SCALAR);
+    }
+    
+    /*
+     * Accumulates the valid rows of a block of bitmap words in two passes, the
+     * second taking central moments about the block's own mean. Cheaper and
+     * more accurate than adding the values one at a time. The block is copied
+     * out densely first so the kernel can run over a plain array.
+     */
+    public static RunningStatistics of(ColumnView column, int fromWord, int toWord, ReductionKernel kernel) {
+        RunningStatistics stats = new RunningStatistics();
+        
+        double[] block = new double[(toWord - fromWord) << 6];
+        int count = column.copyValid(fromWord, toWord, block);
+        
+        if (count == 0) {
+            return stats;
+        }
+        
+        double[] raw = ReductionKernel.newRawSums();
+        kernel.rawSums(block, 0, count, raw);
+        
+        stats.count = count;
+        stats.sum = raw[ReductionKernel.SUM];
+        stats.sumOfSquares = raw[ReductionKernel.SUM_OF_SQUARES];
+        stats.min = raw[ReductionKernel.MIN];
+        stats.max = raw[ReductionKernel.MAX];
+        stats.logSum = raw[ReductionKernel.LOG_SUM];
+        stats.positiveCount = (long) raw[ReductionKernel.POSITIVE_COUNT];
+        stats.reciprocalSum = raw[ReductionKernel.RECIPROCAL_SUM];
+        stats.nonZeroCount = (long) raw[ReductionKernel.NON_ZERO_COUNT];
+        
+        double blockMean = stats.sum / count;
+        
+        double[] central = new double[ReductionKernel.CENTRAL_SUMS];
+        kernel.centralSums(block, 0, count, blockMean, central);
+        
+        stats.mean = ReductionKernel.recenter(central, count, blockMean);
+        stats.m2 = central[ReductionKernel.SQUARED_DIFF];
+        stats.m3 = central[ReductionKernel.CUBED_DIFF];
+        stats.m4 = central[ReductionKernel.FOURTH_DIFF];
+        return stats;
+    }
+    
+    private void addRaw(double value) {
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sum += value;
+        sumOfSquares += value * value;
+        if (value > 0) {
+            logSum += Math.log(value);
+            positiveCount++;
+        }
+        if (value != 0) {
+            reciprocalSum += 1.0 / value;
+            nonZeroCount++;
+        }
+    }
+    
+    public void merge(RunningStatistics other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            copyFrom(other);
+            return;
+        }
+        
+        double na = count;
+        double nb = other.count;
+        double n = na + nb;
+        double delta = other.mean - mean;
+        double delta2 = delta * delta;
+        
+        double mergedM2 = m2 + other.m2 + delta2 * na * nb / n;
+        double mergedM3 = m3 + other.m3
+            + delta2 * delta * na * nb * (na - nb) / (n * n)
+            + 3 * delta * (na * other.m2 - nb * m2) / n;
+        double mergedM4 = m4 + other.m4
+            + delta2 * delta2 * na * nb * (na * na - na * nb + nb * nb) / (n * n * n)
+            + 6 * delta2 * (na * na * other.m2 + nb * nb * m2) / (n * n)
+            + 4 * delta * (na * other.m3 - nb * m3) / n;
+        
+        count += other.count;
+        mean += delta * nb / n;
+        m2 = mergedM2;
+        m3 = mergedM3;
+        m4 = mergedM4;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sum += other.sum;
+        sumOfSquares += other.sumOfSquares;
+        logSum += other.logSum;
+        positiveCount += other.positiveCount;
+        reciprocalSum += other.reciprocalSum;
+        nonZeroCount += other.nonZeroCount;
+    }
+    
+    private void copyFrom(RunningStatistics other) {
+        count = other.count;
+        mean = other.mean;
+        m2 = other.m2;
+        m3 = other.m3;
+        m4 = other.m4;
+        min = other.min;
+        max = other.max;
+        sum = other.sum;
+        sumOfSquares = other.sumOfSquares;
+        logSum = other.logSum;
+        positiveCount = other.positiveCount;
+        reciprocalSum = other.reciprocalSum;
+        nonZeroCount = other.nonZeroCount;
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    public double getMean() {
+        return count > 0 ? mean : 0.0;
+    }
+    
+    public double getSum() {
+        return sum;
+    }
+    
+    public double getMinimum() {
+        return count > 0 ? min : 0.0;
+    }
+    
+    public double getMaximum() {
+        return count > 0 ? max : 0.0;
+    }
+    
+    public double getSumOfSquares() {
+        return sumOfSquares;
+    }
+    
+    public double getLogSum() {
+        return logSum;
+    }
+    
+    public long getPositiveCount() {
+        return positiveCount;
+    }
+    
+    public double getReciprocalSum() {
+        return reciprocalSum;
+    }
+    
+    public long getNonZeroCount() {
+        return nonZeroCount;
+    }
+    
+    /*
+     * Sums of the squared, cubed and fourth-power deviations from the mean.
+     */
+    public double getM2() {
+        return m2;
+    }
+    
+    public double getM3() {
+        return m3;
+    }
+    
+    public double getM4() {
+        return m4;
+    }
+    
+    public double getVariance() {
+        return count < 2 ? 0.0 : m2 / (count - 1);
+    }
+    
+    public double getPopulationVariance() {
+        return count == 0 ? 0.0 : m2 / count;
+    }
+    
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+    
+    public double getSkewness() {
+        if (count < 3) return 0.0;
+        
+        double stdDev = getStandardDeviation();
+        if (stdDev == 0) return 0.0;
+        
+        double n = count;
+        return n / ((n - 1) * (n - 2)) * (m3 / (stdDev * stdDev * stdDev));
+    }
+    
+    public double getKurtosis() {
+        if (count < 4) return 0.0;
+        
+        double variance = getVariance();
+        if (variance == 0) return 0.0;
+        
+        double n = count;
+        double factor1 = (n * (n + 1)) / ((n - 1) * (n - 2) * (n - 3));
+        double factor2 = (3 * Math.pow(n - 1, 2)) / ((n - 2) * (n - 3));
+        return factor1 * (m4 / (variance * variance)) - factor2;
+    }
+    
+    public RunningStatistics copy() {
+        RunningStatistics copy = new RunningStatistics();
+        copy.copyFrom(this);
+        return copy;
+    }
+    
+    public void clear() {
+        copyFrom(new RunningStatistics());
+    }
+}
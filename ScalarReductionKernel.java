@@ -0,0 +1,80 @@
+package analyzer;
+
+/**
+ * Plain loops for ReductionKernel, adding the values in order.
+ *
+ * @author Lukasz Golinski
+ */
+public class ScalarReductionKernel implements ReductionKernel {
+    
+    @Override
+    public void rawSums(double[] values, int from, int to, double[] sums) {
+        double sum = sums[SUM];
+        double sumOfSquares = sums[SUM_OF_SQUARES];
+        double min = sums[MIN];
+        double max = sums[MAX];
+        double logSum = sums[LOG_SUM];
+        double positiveCount = sums[POSITIVE_COUNT];
+        double reciprocalSum = sums[RECIPROCAL_SUM];
+        double nonZeroCount = sums[NON_ZERO_COUNT];
+        
+        for (int i = from; i < to; i++) {
+            double val = values[i];
+            sum += val;
+            sumOfSquares += val * val;
+            min = Math.min(min, val);
+            max = Math.max(max, val);
+            if (val > 0) {
+                logSum += Math.log(val);
+                positiveCount++;
+            }
+            if (val != 0) {
+                reciprocalSum += 1.0 / val;
+                nonZeroCount++;
+            }
+        }
+        
+        sums[SUM] = sum;
+        sums[SUM_OF_SQUARES] = sumOfSquares;
+        sums[MIN] = min;
+        sums[MAX] = max;
+        sums[LOG_SUM] = logSum;
+        sums[POSITIVE_COUNT] = positiveCount;
+        sums[RECIPROCAL_SUM] = reciprocalSum;
+        sums[NON_ZERO_COUNT] = nonZeroCount;
+    }
+    
+    @Override
+    public void centralSums(double[] values, int from, int to, double mean, double[] sums) {
+        double squaredDiff = sums[SQUARED_DIFF];
+        double absDiff = sums[ABS_DIFF];
+        double cubedDiff = sums[CUBED_DIFF];
+        double fourthDiff = sums[FOURTH_DIFF];
+        double sumDiff = sums[DIFF];
+        
+        for (int i = from; i < to; i++) {
+            double diff = values[i] - mean;
+            double squared = diff * diff;
+            sumDiff += diff;
+            squaredDiff += squared;
+            absDiff += Math.abs(diff);
+            cubedDiff += squared * diff;
+            fourthDiff += squared * squared;
+        }
+        
+        sums[SQUARED_DIFF] = squaredDiff;
+        sums[ABS_DIFF] = absDiff;
+        sums[CUBED_DIFF] = cubedDiff;
+        sums[FOURTH_DIFF] = fourthDiff;
+        sums[DIFF] = sumDiff;
+    }
+    
+    @Override
+    public double absDeviationSum(double[] values, int from, int to, double mean) {
+        double sum = 0.0;
+        for (int i = from; i < to; i++) {
+            sum += Math.abs(values[i] - mean);
+        }
+        return sum;
+    }
+}
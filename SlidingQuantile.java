@@ -0,0 +1,195 @@
+package analyzer;
+
+import java.util.Arrays;
+
+/**
+ * Keeps one rank of a fixed-size window in order while the window slides,
+ * in O(log w) per step. The window is split between a max-heap holding the
+ * rank + 1 smallest values and a min-heap holding the rest, so the value at
+ * the rank is the top of the first heap and the next one up is the top of
+ * the second. Every value remembers where it sits in the heaps through its
+ * slot in the window, so the value that leaves is replaced in place by the
+ * one that enters instead of being searched for.
+ *
+ * @author Lukasz Golinski
+ */
+public class SlidingQuantile {
+    
+    private final int window;
+    private final int lowCapacity;
+    
+    private final double[] lowValues;
+    private final int[] lowSlots;
+    private final double[] highValues;
+    private final int[] highSlots;
+    
+    /*
+     * Where each window slot's value is: index i in the low heap as i, index
+     * i in the high heap as -(i + 1).
+     */
+    private final int[] positions;
+    
+    /*
+     * Starts from the first window of values, which slot i of the window
+     * holds value i of.
+     */
+    public SlidingQuantile(double[] initial, int rank) {
+        if (rank < 0 || rank >= initial.length) {
+            throw new IllegalArgumentException("Rank must be between 0 and " + (initial.length - 1) + ": " + rank);
+        }
+        
+        this.window = initial.length;
+        this.lowCapacity = rank + 1;
+        this.lowValues = new double[lowCapacity];
+        this.lowSlots = new int[lowCapacity];
+        this.highValues = new double[window - lowCapacity];
+        this.highSlots = new int[window - lowCapacity];
+        this.positions = new int[window];
+        
+        /* Sorted descending is a valid max-heap and ascending a valid min-heap. */
+        Integer[] order = new Integer[window];
+        for (int i = 0; i < window; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(initial[a], initial[b]));
+        
+        for (int i = 0; i < lowCapacity; i++) {
+            int slot = order[lowCapacity - 1 - i];
+            lowValues[i] = initial[slot];
+            lowSlots[i] = slot;
+            positions[slot] = i;
+        }
+        for (int i = 0; i < highValues.length; i++) {
+            int slot = order[lowCapacity + i];
+            highValues[i] = initial[slot];
+            highSlots[i] = slot;
+            positions[slot] = -(i + 1);
+        }
+    }
+    
+    /*
+     * The value at the rank.
+     */
+    public double lower() {
+        return lowValues[0];
+    }
+    
+    /*
+     * The value at the next rank up, or the value at the rank when it is the
+     * largest in the window.
+     */
+    public double upper() {
+        return highValues.length > 0 ? highValues[0] : lowValues[0];
+    }
+    
+    /*
+     * Replaces the value in the given window slot.
+     */
+    public void replace(int slot, double value) {
+        int position = positions[slot];
+        
+        if (position >= 0) {
+            if (highValues.length > 0 && value > highValues[0]) {
+                /* The smallest of the high heap moves down to make room. */
+                setLow(position, highValues[0], highSlots[0]);
+                siftLow(position);
+                setHigh(0, value, slot);
+                siftHighDown(0);
+            } else {
+                lowValues[position] = value;
+                siftLow(position);
+            }
+        } else {
+            position = -position - 1;
+            if (value < lowValues[0]) {
+                setHigh(position, lowValues[0], lowSlots[0]);
+                siftHigh(position);
+                setLow(0, value, slot);
+                siftLowDown(0);
+            } else {
+                highValues[position] = value;
+                siftHigh(position);
+            }
+        }
+    }
+    
+    private void setLow(int index, double value, int slot) {
+        lowValues[index] = value;
+        lowSlots[index] = slot;
+        positions[slot] = index;
+    }
+    
+    private void setHigh(int index, double value, int slot) {
+        highValues[index] = value;
+        highSlots[index] = slot;
+        positions[slot] = -(index + 1);
+    }
+    
+    private void siftLow(int index) {
+        if (index > 0 && lowValues[index] > lowValues[(index - 1) >>> 1]) {
+            siftLowUp(index);
+        } else {
+            siftLowDown(index);
+        }
+    }
+    
+    private void siftLowUp(int index) {
+        double value = lowValues[index];
+        int slot = lowSlots[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (lowValues[parent] >= value) break;
+            setLow(index, lowValues[parent], lowSlots[parent]);
+            index = parent;
+        }
+        setLow(index, value, slot);
+    }
+    
+    private void siftLowDown(int index) {
+        double value = lowValues[index];
+        int slot = lowSlots[index];
+        int size = lowValues.length;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) break;
+            if (child + 1 < size && lowValues[child + 1] > lowValues[child]) child++;
+            if (lowValues[child] <= value) break;
+            setLow(index, lowValues[child], lowSlots[child]);
+            index = child;
+        }
+        setLow(index, value, slot);
+    }
+    
+    private void siftHigh(int index) {
+        if (index > 0 && highValues[index] < highValues[(index - 1) >>> 1]) {
+            siftHighUp(index);
+        } else {
+            siftHighDown(index);
+        }
+    }
+    
+    private void siftHighUp(int index) {
+        double value = highValues[index];
+        int slot = highSlots[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (highValues[parent] <= value) break;
+            setHigh(index, highValues[parent], highSlots[parent]);
+            index = parent;
+        }
+        setHigh(index, value, slot);
+    }
+    
+    private void siftHighDown(int index) {
+        double value = highValues[index];
+        int slot = highSlots[index];
+        int size = highValues.length;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) break;
+            if (child + 1 < size && highValues[child + 1] < highValues[child]) child++;
+            if (highValues[child] >= value) break;
+            setHigh(index, highValues[child], highSlots[child]);
+            index = child;
+        }
+        setHigh(index, value, slot);
+    }
+}
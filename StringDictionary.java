@@ -0,0 +1,43 @@
+package analyzer;
+
+import java.util.*;
+
+/**
+ * Assigns each distinct string a dense int code, starting at 0, in order of
+ * first appearance.
+ *
+ * @author Lukasz Golinski
+ */
+public class StringDictionary {
+    
+    private Map<String, Integer> codes;
+    private List<String> values;
+    
+    public StringDictionary() {
+        this.codes = new HashMap<>();
+        this.values = new ArrayList<>();
+    }
+    
+    public int encode(String value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+        }
+        return code;
+    }
+    
+    public String decode(int code) {
+        return values.get(code);
+    }
+    
+    public int size() {
+        return values.size();
+    }
+    
+    public void clear() {
+        codes.clear();
+        values.clear();
+    }
+}
@@ -0,0 +1,37 @@
+package analyzer;
+
+import java.util.Arrays;
+
+/**
+ * One field position of the retained records, stored as dictionary codes.
+ * A row whose record has no field at this position holds NO_VALUE.
+ *
+ * @author Lukasz Golinski
+ */
+public class TextColumn {
+    
+    public static final int NO_VALUE = -1;
+    
+    private int[] codes;
+    private int size;
+    
+    public TextColumn() {
+        this.codes = new int[16];
+        this.size = 0;
+    }
+    
+    public void add(int code) {
+        if (size == codes.length) {
+            codes = Arrays.copyOf(codes, size * 2);
+        }
+        codes[size++] = code;
+    }
+    
+    public int get(int row) {
+        return codes[row];
+    }
+    
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,50 @@
+package analyzer;
+
+import java.util.Arrays;
+
+/**
+ * One bit per row, set when the row holds a value. Bits are packed into
+ * longs so consumers can skip missing rows a whole word at a time.
+ *
+ * @author Lukasz Golinski
+ */
+public class ValidityBitmap {
+    
+    private long[] words;
+    private int cardinality;
+    
+    public ValidityBitmap() {
+        this.words = new long[1];
+        this.cardinality = 0;
+    }
+    
+    public void set(int row) {
+        int word = row >>> 6;
+        if (word >= words.length) {
+            words = Arrays.copyOf(words, Math.max(word + 1, words.length * 2));
+        }
+        long mask = 1L << row;
+        if ((words[word] & mask) == 0) {
+            words[word] |= mask;
+            cardinality++;
+        }
+    }
+    
+    public boolean get(int row) {
+        int word = row >>> 6;
+        return word < words.length && (words[word] & (1L << row)) != 0;
+    }
+    
+    public long word(int index) {
+        return index < words.length ? words[index] : 0L;
+    }
+    
+    public int cardinality() {
+        return cardinality;
+    }
+    
+    public void clear() {
+        words = new long[1];
+        cardinality = 0;
+    }
+}
@@ -0,0 +1,221 @@
+package analyzer;
+
+import javax.swing.*;
+import javax.swing.table.*;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.text.DecimalFormat;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Lists the most frequent values of the analyzed column with their counts
+ * and share of the valid values. The values are only counted once the tab
+ * is shown, on a worker thread; the engine is handed from one count to the
+ * next and never used by two threads at once.
+ *
+ * @author Lukasz Golinski
+ */
+public class ValueCountsPanel extends JPanel {
+    
+    private StatisticsEngine engine;
+    private String columnName;
+    private JTable countsTable;
+    private DefaultTableModel tableModel;
+    private JSpinner limitSpinner;
+    private JLabel summaryLabel;
+    private DecimalFormat formatter;
+    private DecimalFormat percentFormatter;
+    private SwingWorker<List<FrequencyTable.Entry>, Void> worker;
+    private boolean stale;
+    
+    public ValueCountsPanel() {
+        formatter = new DecimalFormat("#,##0.######");
+        percentFormatter = new DecimalFormat("0.00");
+        
+        setLayout(new BorderLayout(8, 8));
+        setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        setBackground(new Color(248, 249, 250));
+        
+        initializeComponents();
+        
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentShown(ComponentEvent e) {
+                if (stale) {
+                    refreshTable();
+                }
+            }
+        });
+    }
+    
+    private void initializeComponents() {
+        JPanel topPanel = new JPanel(new BorderLayout(10, 10));
+        topPanel.setOpaque(false);
+        
+        JLabel titleLabel = new JLabel("Value Counts");
+        titleLabel.setFont(new Font("SansSerif", Font.BOLD, 16));
+        titleLabel.setForeground(new Color(44, 62, 80));
+        
+        JPanel controlsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 15, 5));
+        controlsPanel.setOpaque(false);
+        
+        JLabel limitLabel = new JLabel("Show top:");
+        limitLabel.setFont(new Font("SansSerif", Font.PLAIN, 12));
+        controlsPanel.add(limitLabel);
+        
+        SpinnerNumberModel limitModel = new SpinnerNumberModel(50, 1, 10000, 10);
+        limitSpinner = new JSpinner(limitModel);
+        limitSpinner.setPreferredSize(new Dimension(80, 25));
+        limitSpinner.addChangeListener(e -> refreshTable());
+        controlsPanel.add(limitSpinner);
+        
+        topPanel.add(titleLabel, BorderLayout.NORTH);
+        topPanel.add(controlsPanel, BorderLayout.CENTER);
+        
+        add(topPanel, BorderLayout.NORTH);
+        
+        String[] columns = {"Rank", "Value", "Count", "% of Values"};
+        tableModel = new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        
+        countsTable = new JTable(tableModel);
+        countsTable.setFont(new Font("SansSerif", Font.PLAIN, 12));
+        countsTable.setRowHeight(24);
+        countsTable.setShowGrid(true);
+        countsTable.setGridColor(new Color(230, 230, 230));
+        
+        JTableHeader header = countsTable.getTableHeader();
+        header.setFont(new Font("SansSerif", Font.BOLD, 12));
+        header.setBackground(new Color(52, 73, 94));
+        header.setForeground(Color.WHITE);
+        
+        DefaultTableCellRenderer rightRenderer = new DefaultTableCellRenderer();
+        rightRenderer.setHorizontalAlignment(SwingConstants.RIGHT);
+        for (int i = 0; i < countsTable.getColumnCount(); i++) {
+            countsTable.getColumnModel().getColumn(i).setCellRenderer(rightRenderer);
+        }
+        countsTable.getColumnModel().getColumn(0).setPreferredWidth(60);
+        
+        JScrollPane scrollPane = new JScrollPane(countsTable);
+        scrollPane.setBorder(BorderFactory.createLineBorder(new Color(200, 200, 200)));
+        scrollPane.getViewport().setBackground(Color.WHITE);
+        
+        add(scrollPane, BorderLayout.CENTER);
+        
+        summaryLabel = new JLabel("Analyze a column to see its value counts");
+        summaryLabel.setFont(new Font("SansSerif", Font.ITALIC, 11));
+        summaryLabel.setForeground(Color.GRAY);
+        summaryLabel.setBorder(BorderFactory.createEmptyBorder(5, 0, 0, 0));
+        
+        add(summaryLabel, BorderLayout.SOUTH);
+    }
+    
+    public void setData(StatisticsEngine engine, String columnName) {
+        this.engine = engine;
+        this.columnName = columnName;
+        tableModel.setRowCount(0);
+        stale = true;
+        if (isShowing()) {
+            refreshTable();
+        } else {
+            summaryLabel.setText(columnName + ": values are counted when this tab is shown");
+        }
+    }
+    
+    /*
+     * Counts on a worker thread. While a count is running a new one is only
+     * noted, and started when the running one is done.
+     */
+    private void refreshTable() {
+        if (engine == null || engine.getCount() == 0) {
+            tableModel.setRowCount(0);
+            summaryLabel.setText("Analyze a column to see its value counts");
+            return;
+        }
+        
+        stale = true;
+        if (worker != null && !worker.isDone()) {
+            return;
+        }
+        stale = false;
+        
+        StatisticsEngine current = engine;
+        String currentColumn = columnName;
+        int limit = (Integer) limitSpinner.getValue();
+        summaryLabel.setText("Counting the values of " + currentColumn + "...");
+        
+        worker = new SwingWorker<>() {
+            private int distinct;
+            private boolean exact;
+            private boolean distinctExact;
+            
+            @Override
+            protected List<FrequencyTable.Entry> doInBackground() {
+                List<FrequencyTable.Entry> top = current.getTopValues(limit);
+                distinct = current.getDistinctCount();
+                exact = current.areValueCountsExact();
+                distinctExact = current.isDistinctCountExact();
+                return top;
+            }
+            
+            @Override
+            protected void done() {
+                if (engine == current && !stale) {
+                    try {
+                        showCounts(get(), current.getCount(), distinct, exact, distinctExact);
+                    } catch (InterruptedException | ExecutionException ex) {
+                        summaryLabel.setText("Error counting values: " + ex.getMessage());
+                    }
+                }
+                if (stale && engine != null && isShowing()) {
+                    refreshTable();
+                }
+            }
+        };
+        
+        worker.execute();
+    }
+    
+    private void showCounts(List<FrequencyTable.Entry> top, int total, int distinct,
+                            boolean exact, boolean distinctExact) {
+        tableModel.setRowCount(0);
+        
+        for (int i = 0; i < top.size(); i++) {
+            FrequencyTable.Entry entry = top.get(i);
+            tableModel.addRow(new Object[]{
+                i + 1,
+                formatter.format(entry.getValue()),
+                entry.getCount(),
+                percentFormatter.format(100.0 * entry.getCount() / total) + "%"
+            });
+        }
+        
+        summaryLabel.setText(columnName + ": " + (distinctExact ? "" : "about ") + distinct +
+                             " distinct values in " + total + " | showing " + top.size() +
+                             (exact ? "" : " (estimated: the counts shown are exact, but values as frequent may be missing)"));
+    }
+    
+    /*
+     * The count last started, which may still be reading the column, so
+     * whoever releases the column's storage can wait for it off the event
+     * thread. Null when none was started.
+     */
+    public Future<?> getPendingWork() {
+        return worker;
+    }
+    
+    public void clearData() {
+        engine = null;
+        stale = false;
+        columnName = null;
+        tableModel.setRowCount(0);
+        summaryLabel.setText("Analyze a column to see its value counts");
+    }
+}
@@ -0,0 +1,116 @@
+package analyzer;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * ReductionKernel on the preferred DoubleVector shape of the platform, which
+ * is four doubles with AVX2 and eight with AVX-512. Each sum is kept in its
+ * own vector of lane partials and reduced once at the end of the block; the
+ * tail that does not fill a vector is handled by the scalar loops.
+ *
+ * Only loaded through ReductionKernel.vector, so the rest of the code runs
+ * without the incubator module.
+ *
+ * @author Lukasz Golinski
+ */
+public class VectorReductionKernel implements ReductionKernel {
+    
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    
+    public VectorReductionKernel() {
+        if (SPECIES.length() < 2) {
+            throw new UnsupportedOperationException("No vector shape wider than one double");
+        }
+    }
+    
+    @Override
+    public void rawSums(double[] values, int from, int to, double[] sums) {
+        int upper = from + SPECIES.loopBound(to - from);
+        
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1.0);
+        DoubleVector sum = DoubleVector.zero(SPECIES);
+        DoubleVector sumOfSquares = DoubleVector.zero(SPECIES);
+        DoubleVector min = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+        DoubleVector max = DoubleVector.broadcast(SPECIES, Double.NEGATIVE_INFINITY);
+        DoubleVector logSum = DoubleVector.zero(SPECIES);
+        DoubleVector reciprocalSum = DoubleVector.zero(SPECIES);
+        long positiveCount = 0;
+        long nonZeroCount = 0;
+        
+        for (int i = from; i < upper; i += SPECIES.length()) {
+            DoubleVector v = DoubleVector.fromArray(SPECIES, values, i);
+            sum = sum.add(v);
+            sumOfSquares = v.fma(v, sumOfSquares);
+            min = min.min(v);
+            max = max.max(v);
+            
+            VectorMask<Double> positive = v.compare(VectorOperators.GT, 0.0);
+            if (positive.anyTrue()) {
+                logSum = logSum.add(v.lanewise(VectorOperators.LOG), positive);
+                positiveCount += positive.trueCount();
+            }
+            
+            VectorMask<Double> nonZero = v.compare(VectorOperators.NE, 0.0);
+            reciprocalSum = reciprocalSum.add(one.div(v), nonZero);
+            nonZeroCount += nonZero.trueCount();
+        }
+        
+        sums[SUM] += sum.reduceLanes(VectorOperators.ADD);
+        sums[SUM_OF_SQUARES] += sumOfSquares.reduceLanes(VectorOperators.ADD);
+        sums[MIN] = Math.min(sums[MIN], min.reduceLanes(VectorOperators.MIN));
+        sums[MAX] = Math.max(sums[MAX], max.reduceLanes(VectorOperators.MAX));
+        sums[LOG_SUM] += logSum.reduceLanes(VectorOperators.ADD);
+        sums[POSITIVE_COUNT] += positiveCount;
+        sums[RECIPROCAL_SUM] += reciprocalSum.reduceLanes(VectorOperators.ADD);
+        sums[NON_ZERO_COUNT] += nonZeroCount;
+        
+        SCALAR.rawSums(values, upper, to, sums);
+    }
+    
+    @Override
+    public void centralSums(double[] values, int from, int to, double mean, double[] sums) {
+        int upper = from + SPECIES.loopBound(to - from);
+        
+        DoubleVector center = DoubleVector.broadcast(SPECIES, mean);
+        DoubleVector squaredDiff = DoubleVector.zero(SPECIES);
+        DoubleVector absDiff = DoubleVector.zero(SPECIES);
+        DoubleVector cubedDiff = DoubleVector.zero(SPECIES);
+        DoubleVector fourthDiff = DoubleVector.zero(SPECIES);
+        DoubleVector sumDiff = DoubleVector.zero(SPECIES);
+        
+        for (int i = from; i < upper; i += SPECIES.length()) {
+            DoubleVector diff = DoubleVector.fromArray(SPECIES, values, i).sub(center);
+            sumDiff = sumDiff.add(diff);
+            DoubleVector squared = diff.mul(diff);
+            squaredDiff = squaredDiff.add(squared);
+            absDiff = absDiff.add(diff.abs());
+            cubedDiff = squared.fma(diff, cubedDiff);
+            fourthDiff = squared.fma(squared, fourthDiff);
+        }
+        
+        sums[SQUARED_DIFF] += squaredDiff.reduceLanes(VectorOperators.ADD);
+        sums[ABS_DIFF] += absDiff.reduceLanes(VectorOperators.ADD);
+        sums[CUBED_DIFF] += cubedDiff.reduceLanes(VectorOperators.ADD);
+        sums[FOURTH_DIFF] += fourthDiff.reduceLanes(VectorOperators.ADD);
+        sums[DIFF] += sumDiff.reduceLanes(VectorOperators.ADD);
+        
+        SCALAR.centralSums(values, upper, to, mean, sums);
+    }
+    
+    @Override
+    public double absDeviationSum(double[] values, int from, int to, double mean) {
+        int upper = from + SPECIES.loopBound(to - from);
+        
+        DoubleVector center = DoubleVector.broadcast(SPECIES, mean);
+        DoubleVector sum = DoubleVector.zero(SPECIES);
+        
+        for (int i = from; i < upper; i += SPECIES.length()) {
+            sum = sum.add(DoubleVector.fromArray(SPECIES, values, i).sub(center).abs());
+        }
+        
+        return sum.reduceLanes(VectorOperators.ADD) + SCALAR.absDeviationSum(values, upper, to, mean);
+    }
+}
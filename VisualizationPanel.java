@@ -19,14 +19,18 @@ public class VisualizationPanel extends JPanel {
         MOVING_AVERAGE_OVERLAY
     }
     
-    private double[] primaryData;
-    private double[] secondaryData;
+    private ColumnView primaryData;
+    private ColumnView secondaryData;
+    private ColumnView pairedX;
+    private ColumnView pairedY;
+    private RegressionFit fitLine;
     private String chartTitle;
     private String xAxisLabel;
     private String yAxisLabel;
     private ChartType currentType;
     private Color primaryColor;
     private Color secondaryColor;
+    private Color fitColor;
     private Color gridColor;
     private Color axisColor;
     
@@ -35,18 +39,20 @@ public class VisualizationPanel extends JPanel {
     private static final int PADDING_TOP = 50;
     private static final int PADDING_BOTTOM = 50;
     private static final int TICK_COUNT = 8;
+    private static final int FIT_SAMPLES = 200;
     
     private DecimalFormat formatter;
     
     public VisualizationPanel() {
-        this.primaryData = new double[0];
-        this.secondaryData = new double[0];
+        this.primaryData = ColumnView.EMPTY;
+        this.secondaryData = ColumnView.EMPTY;
         this.chartTitle = "Data Visualization";
         this.xAxisLabel = "Index";
         this.yAxisLabel = "Value";
         this.currentType = ChartType.LINE_CHART;
         this.primaryColor = new Color(41, 128, 185);
         this.secondaryColor = new Color(231, 76, 60);
+        this.fitColor = new Color(230, 126, 34);
         this.gridColor = new Color(220, 220, 220);
         this.axisColor = new Color(80, 80, 80);
         this.formatter = new DecimalFormat("#,##0.##");
@@ -56,12 +62,41 @@ public class VisualizationPanel extends JPanel {
     }
     
     public void setData(double[] data) {
-        this.primaryData = data != null ? Arrays.copyOf(data, data.length) : new double[0];
+        setData(data != null ? ColumnView.wrap(Arrays.copyOf(data, data.length)) : null);
+    }
+    
+    public void setData(ColumnView data) {
+        this.primaryData = data != null ? data : ColumnView.EMPTY;
         repaint();
     }
     
     public void setSecondaryData(double[] data) {
-        this.secondaryData = data != null ? Arrays.copyOf(data, data.length) : new double[0];
+        setSecondaryData(data != null ? ColumnView.wrap(Arrays.copyOf(data, data.length)) : null);
+    }
+    
+    public void setSecondaryData(ColumnView data) {
+        this.secondaryData = data != null ? data : ColumnView.EMPTY;
+        repaint();
+    }
+    
+    /*
+     * Makes the scatter plot show y against x over the rows where both
+     * columns have a value, instead of the primary data against the row
+     * index. Null columns go back to the index.
+     */
+    public void setPairedData(ColumnView x, ColumnView y) {
+        this.pairedX = x != null && y != null ? x : null;
+        this.pairedY = x != null && y != null ? y : null;
+        repaint();
+    }
+    
+    /*
+     * Overlays a fitted curve, with its equation and goodness of fit, on the
+     * scatter plot and, when it is fitted against the row index, on the line
+     * chart. The curve is taken in the units of the x axis.
+     */
+    public void setFitLine(RegressionFit fit) {
+        this.fitLine = fit;
         repaint();
     }
     
@@ -105,7 +140,7 @@ public class VisualizationPanel extends JPanel {
         int chartWidth = width - PADDING_LEFT - PADDING_RIGHT;
         int chartHeight = height - PADDING_TOP - PADDING_BOTTOM;
         
-        if (primaryData.length == 0) {
+        if (primaryData.size() == 0) {
             drawNoDataMessage(g2d, width, height);
             return;
         }
@@ -130,7 +165,13 @@ public class VisualizationPanel extends JPanel {
                 break;
         }
         
-        if (secondaryData.length > 0 && currentType == ChartType.MOVING_AVERAGE_OVERLAY) {
+        if (fitLine != null && fitLine.isDefined() && (currentType == ChartType.SCATTER_PLOT
+                || currentType == ChartType.LINE_CHART && pairedX == null)) {
+            drawFitLine(g2d, chartWidth, chartHeight);
+            drawFitSummary(g2d);
+        }
+        
+        if (secondaryData.size() > 0 && currentType == ChartType.MOVING_AVERAGE_OVERLAY) {
             drawSecondaryLine(g2d, chartWidth, chartHeight);
             drawLegend(g2d, width);
         }
@@ -182,17 +223,9 @@ public class VisualizationPanel extends JPanel {
         
         g2d.setFont(new Font("SansSerif", Font.PLAIN, 11));
         
-        double minVal = getMinValue(primaryData);
-        double maxVal = getMaxValue(primaryData);
-        
-        if (minVal == maxVal) {
-            minVal -= 1;
-            maxVal += 1;
-        }
-        
-        double padding = (maxVal - minVal) * 0.1;
-        minVal -= padding;
-        maxVal += padding;
+        double[] range = valueRange();
+        double minVal = range[0];
+        double maxVal = range[1];
         
         for (int i = 0; i <= TICK_COUNT; i++) {
             double value = maxVal - (i * (maxVal - minVal) / TICK_COUNT);
@@ -207,14 +240,16 @@ public class VisualizationPanel extends JPanel {
             g2d.drawString(label, PADDING_LEFT - labelWidth - 8, y + 4);
         }
         
+        double[] xRange = xRange();
+        
         for (int i = 0; i <= TICK_COUNT; i++) {
             int x = PADDING_LEFT + (i * chartWidth / TICK_COUNT);
-            int index = (int) ((double) i / TICK_COUNT * (primaryData.length - 1));
+            double position = xRange[0] + (double) i / TICK_COUNT * (xRange[1] - xRange[0]);
             
             g2d.setColor(axisColor);
             g2d.drawLine(x, PADDING_TOP + chartHeight, x, PADDING_TOP + chartHeight + 5);
             
-            String label = String.valueOf(index);
+            String label = plotsPairs() ? formatter.format(position) : String.valueOf((int) position);
             FontMetrics fm = g2d.getFontMetrics();
             int labelWidth = fm.stringWidth(label);
             g2d.drawString(label, x - labelWidth / 2, PADDING_TOP + chartHeight + 18);
@@ -238,7 +273,7 @@ public class VisualizationPanel extends JPanel {
     }
     
     private void drawLineChart(Graphics2D g2d, int chartWidth, int chartHeight) {
-        if (primaryData.length < 2) return;
+        if (primaryData.size() < 2) return;
         
         double minVal = getMinValue(primaryData);
         double maxVal = getMaxValue(primaryData);
@@ -258,9 +293,9 @@ public class VisualizationPanel extends JPanel {
         Path2D.Double path = new Path2D.Double();
         boolean first = true;
         
-        for (int i = 0; i < primaryData.length; i++) {
-            double xRatio = (double) i / (primaryData.length - 1);
-            double yRatio = (primaryData[i] - minVal) / (maxVal - minVal);
+        for (int i = 0; i < primaryData.size(); i++) {
+            double xRatio = (double) i / (primaryData.size() - 1);
+            double yRatio = (primaryData.get(i) - minVal) / (maxVal - minVal);
             
             int x = PADDING_LEFT + (int) (xRatio * chartWidth);
             int y = PADDING_TOP + chartHeight - (int) (yRatio * chartHeight);
@@ -276,9 +311,9 @@ public class VisualizationPanel extends JPanel {
         g2d.draw(path);
         
         g2d.setStroke(new BasicStroke(1));
-        for (int i = 0; i < primaryData.length; i++) {
-            double xRatio = (double) i / (primaryData.length - 1);
-            double yRatio = (primaryData[i] - minVal) / (maxVal - minVal);
+        for (int i = 0; i < primaryData.size(); i++) {
+            double xRatio = (double) i / (primaryData.size() - 1);
+            double yRatio = (primaryData.get(i) - minVal) / (maxVal - minVal);
             
             int x = PADDING_LEFT + (int) (xRatio * chartWidth);
             int y = PADDING_TOP + chartHeight - (int) (yRatio * chartHeight);
@@ -291,7 +326,7 @@ public class VisualizationPanel extends JPanel {
     }
     
     private void drawSecondaryLine(Graphics2D g2d, int chartWidth, int chartHeight) {
-        if (secondaryData.length < 2) return;
+        if (secondaryData.size() < 2) return;
         
         double minVal = Math.min(getMinValue(primaryData), getMinValue(secondaryData));
         double maxVal = Math.max(getMaxValue(primaryData), getMaxValue(secondaryData));
@@ -311,11 +346,11 @@ public class VisualizationPanel extends JPanel {
         Path2D.Double path = new Path2D.Double();
         boolean first = true;
         
-        int offset = (primaryData.length - secondaryData.length) / 2;
+        int offset = (primaryData.size() - secondaryData.size()) / 2;
         
-        for (int i = 0; i < secondaryData.length; i++) {
-            double xRatio = (double) (i + offset) / (primaryData.length - 1);
-            double yRatio = (secondaryData[i] - minVal) / (maxVal - minVal);
+        for (int i = 0; i < secondaryData.size(); i++) {
+            double xRatio = (double) (i + offset) / (primaryData.size() - 1);
+            double yRatio = (secondaryData.get(i) - minVal) / (maxVal - minVal);
             
             int x = PADDING_LEFT + (int) (xRatio * chartWidth);
             int y = PADDING_TOP + chartHeight - (int) (yRatio * chartHeight);
@@ -332,7 +367,7 @@ public class VisualizationPanel extends JPanel {
     }
     
     private void drawBarChart(Graphics2D g2d, int chartWidth, int chartHeight) {
-        if (primaryData.length == 0) return;
+        if (primaryData.size() == 0) return;
         
         double minVal = Math.min(0, getMinValue(primaryData));
         double maxVal = getMaxValue(primaryData);
@@ -344,13 +379,13 @@ public class VisualizationPanel extends JPanel {
         double padding = (maxVal - minVal) * 0.1;
         maxVal += padding;
         
-        int barWidth = Math.max(2, (chartWidth - 20) / primaryData.length - 2);
-        int spacing = (chartWidth - (barWidth * primaryData.length)) / (primaryData.length + 1);
+        int barWidth = Math.max(2, (chartWidth - 20) / primaryData.size() - 2);
+        int spacing = (chartWidth - (barWidth * primaryData.size())) / (primaryData.size() + 1);
         
         double zeroY = PADDING_TOP + chartHeight - (int) ((0 - minVal) / (maxVal - minVal) * chartHeight);
         
-        for (int i = 0; i < primaryData.length; i++) {
-            double yRatio = (primaryData[i] - minVal) / (maxVal - minVal);
+        for (int i = 0; i < primaryData.size(); i++) {
+            double yRatio = (primaryData.get(i) - minVal) / (maxVal - minVal);
             
             int x = PADDING_LEFT + spacing + i * (barWidth + spacing);
             int barHeight = (int) (yRatio * chartHeight);
@@ -369,9 +404,9 @@ public class VisualizationPanel extends JPanel {
     }
     
     private void drawHistogram(Graphics2D g2d, int chartWidth, int chartHeight) {
-        if (primaryData.length == 0) return;
+        if (primaryData.size() == 0) return;
         
-        int binCount = Math.min(20, (int) Math.sqrt(primaryData.length));
+        int binCount = Math.min(20, (int) Math.sqrt(primaryData.size()));
         binCount = Math.max(5, binCount);
         
         double minVal = getMinValue(primaryData);
@@ -385,7 +420,8 @@ public class VisualizationPanel extends JPanel {
         double binWidth = (maxVal - minVal) / binCount;
         int[] frequencies = new int[binCount];
         
-        for (double val : primaryData) {
+        for (int i = 0; i < primaryData.size(); i++) {
+            double val = primaryData.get(i);
             int binIndex = (int) ((val - minVal) / binWidth);
             if (binIndex >= binCount) binIndex = binCount - 1;
             if (binIndex < 0) binIndex = 0;
@@ -419,23 +455,21 @@ public class VisualizationPanel extends JPanel {
     }
     
     private void drawScatterPlot(Graphics2D g2d, int chartWidth, int chartHeight) {
-        if (primaryData.length == 0) return;
-        
-        double minVal = getMinValue(primaryData);
-        double maxVal = getMaxValue(primaryData);
-        
-        if (minVal == maxVal) {
-            minVal -= 1;
-            maxVal += 1;
-        }
+        if (primaryData.size() == 0) return;
         
-        double padding = (maxVal - minVal) * 0.1;
-        minVal -= padding;
-        maxVal += padding;
+        double[] range = valueRange();
+        double minVal = range[0];
+        double maxVal = range[1];
+        double[] xRange = xRange();
+        boolean pairs = plotsPairs();
+        ColumnView values = pairs ? pairedY : primaryData;
         
-        for (int i = 0; i < primaryData.length; i++) {
-            double xRatio = (double) i / (primaryData.length - 1);
-            double yRatio = (primaryData[i] - minVal) / (maxVal - minVal);
+        for (int i = 0; i < values.size(); i++) {
+            if (pairs && !(pairedY.isValid(i) && pairedX.isValid(i))) continue;
+            
+            double position = pairs ? pairedX.get(i) : i;
+            double xRatio = (position - xRange[0]) / (xRange[1] - xRange[0]);
+            double yRatio = (values.get(i) - minVal) / (maxVal - minVal);
             
             int x = PADDING_LEFT + (int) (xRatio * chartWidth);
             int y = PADDING_TOP + chartHeight - (int) (yRatio * chartHeight);
@@ -449,6 +483,61 @@ public class VisualizationPanel extends JPanel {
         }
     }
     
+    private void drawFitLine(Graphics2D g2d, int chartWidth, int chartHeight) {
+        double[] range = valueRange();
+        double minVal = range[0];
+        double maxVal = range[1];
+        double[] xRange = xRange();
+        
+        Path2D.Double path = new Path2D.Double();
+        for (int i = 0; i <= FIT_SAMPLES; i++) {
+            double xRatio = (double) i / FIT_SAMPLES;
+            double yRatio = (fitLine.predict(xRange[0] + xRatio * (xRange[1] - xRange[0])) - minVal) / (maxVal - minVal);
+            
+            double x = PADDING_LEFT + xRatio * chartWidth;
+            double y = PADDING_TOP + chartHeight - yRatio * chartHeight;
+            
+            if (i == 0) {
+                path.moveTo(x, y);
+            } else {
+                path.lineTo(x, y);
+            }
+        }
+        
+        Shape clip = g2d.getClip();
+        g2d.clipRect(PADDING_LEFT, PADDING_TOP, chartWidth, chartHeight);
+        g2d.setColor(fitColor);
+        g2d.setStroke(new BasicStroke(2.5f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND,
+                                       10, new float[]{8, 5}, 0));
+        g2d.draw(path);
+        g2d.setStroke(new BasicStroke(1));
+        g2d.setClip(clip);
+    }
+    
+    private void drawFitSummary(Graphics2D g2d) {
+        String equation = fitLine.getEquation();
+        String quality = String.format("R\u00b2 = %.4f   SE = %s   n = %,d",
+                                       fitLine.getRSquared(),
+                                       formatter.format(fitLine.getResidualStandardError()),
+                                       fitLine.getCount());
+        
+        g2d.setFont(new Font("SansSerif", Font.PLAIN, 11));
+        FontMetrics fm = g2d.getFontMetrics();
+        int boxWidth = Math.max(fm.stringWidth(equation), fm.stringWidth(quality)) + 20;
+        int boxX = PADDING_LEFT + 10;
+        int boxY = PADDING_TOP + 10;
+        
+        g2d.setColor(new Color(255, 255, 255, 230));
+        g2d.fillRoundRect(boxX, boxY, boxWidth, 40, 10, 10);
+        g2d.setColor(Color.GRAY);
+        g2d.drawRoundRect(boxX, boxY, boxWidth, 40, 10, 10);
+        
+        g2d.setColor(fitColor.darker());
+        g2d.drawString(equation, boxX + 10, boxY + 16);
+        g2d.setColor(Color.BLACK);
+        g2d.drawString(quality, boxX + 10, boxY + 32);
+    }
+    
     private void drawLegend(Graphics2D g2d, int width) {
         int legendX = width - 180;
         int legendY = 15;
@@ -471,27 +560,100 @@ public class VisualizationPanel extends JPanel {
         g2d.drawString("Moving Average", legendX + 28, legendY + 34);
     }
     
-    private double getMinValue(double[] data) {
-        if (data.length == 0) return 0;
-        double min = data[0];
-        for (double val : data) {
+    private boolean plotsPairs() {
+        return pairedX != null && currentType == ChartType.SCATTER_PLOT;
+    }
+    
+    /*
+     * The span of the x axis: the row indexes, or the values of the x column
+     * over the plotted rows.
+     */
+    private double[] xRange() {
+        if (!plotsPairs()) {
+            return new double[]{0, Math.max(1, primaryData.size() - 1)};
+        }
+        
+        double[] range = pairedRange(pairedX);
+        if (range[0] == range[1]) {
+            range[0] -= 1;
+            range[1] += 1;
+        }
+        return range;
+    }
+    
+    /*
+     * The span of the y axis with a tenth of it added at each end.
+     */
+    private double[] valueRange() {
+        double minVal;
+        double maxVal;
+        
+        if (plotsPairs()) {
+            double[] range = pairedRange(pairedY);
+            minVal = range[0];
+            maxVal = range[1];
+        } else {
+            minVal = getMinValue(primaryData);
+            maxVal = getMaxValue(primaryData);
+        }
+        
+        if (minVal == maxVal) {
+            minVal -= 1;
+            maxVal += 1;
+        }
+        
+        double padding = (maxVal - minVal) * 0.1;
+        return new double[]{minVal - padding, maxVal + padding};
+    }
+    
+    /*
+     * Minimum and maximum of one of the paired columns over the rows where
+     * both have a value.
+     */
+    private double[] pairedRange(ColumnView data) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        int words = Math.min(pairedX.wordCount(), pairedY.wordCount());
+        
+        for (int w = 0; w < words; w++) {
+            long bits = pairedX.validityWord(w) & pairedY.validityWord(w);
+            while (bits != 0) {
+                double val = data.get((w << 6) + Long.numberOfTrailingZeros(bits));
+                if (val < min) min = val;
+                if (val > max) max = val;
+                bits &= bits - 1;
+            }
+        }
+        
+        return min <= max ? new double[]{min, max} : new double[]{0, 0};
+    }
+    
+    private double getMinValue(ColumnView data) {
+        if (data.size() == 0) return 0;
+        double min = data.get(0);
+        for (int i = 1; i < data.size(); i++) {
+            double val = data.get(i);
             if (val < min) min = val;
         }
         return min;
     }
     
-    private double getMaxValue(double[] data) {
-        if (data.length == 0) return 0;
-        double max = data[0];
-        for (double val : data) {
+    private double getMaxValue(ColumnView data) {
+        if (data.size() == 0) return 0;
+        double max = data.get(0);
+        for (int i = 1; i < data.size(); i++) {
+            double val = data.get(i);
             if (val > max) max = val;
         }
         return max;
     }
     
     public void clearChart() {
-        primaryData = new double[0];
-        secondaryData = new double[0];
+        primaryData = ColumnView.EMPTY;
+        secondaryData = ColumnView.EMPTY;
+        pairedX = null;
+        pairedY = null;
+        fitLine = null;
         chartTitle = "Data Visualization";
         repaint();
     }
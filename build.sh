@@ -8,6 +8,10 @@ SRC_DIR="$PROJECT_DIR/src"
 BUILD_DIR="$PROJECT_DIR/build"
 MAIN_CLASS="analyzer.Main"
 
+# The vector statistics kernel needs the incubating Vector API; without this
+# module at run time the scalar kernel is used instead
+VECTOR_MODULE="--add-modules jdk.incubator.vector"
+
 # Terminal colors
 RED='\033[0;31m'
 GREEN='\033[0;32m'
@@ -72,7 +76,7 @@ build() {
     echo -e "  Found ${BLUE}$SOURCE_COUNT${NC} source files"
     
     # Compile all sources
-    javac -d "$BUILD_DIR" -sourcepath "$SRC_DIR" $SOURCES 2>&1
+    javac $VECTOR_MODULE -d "$BUILD_DIR" -sourcepath "$SRC_DIR" $SOURCES 2>&1
     
     if [ $? -eq 0 ]; then
         echo -e "${GREEN}✓ Compilation successful${NC}"
@@ -97,7 +101,7 @@ run() {
     echo ""
     
     cd "$BUILD_DIR"
-    java $MAIN_CLASS
+    java $VECTOR_MODULE $MAIN_CLASS
 }
 
 # Function to create JAR file
@@ -125,7 +129,7 @@ create_jar() {
         JAR_SIZE=$(du -h "$JAR_FILE" | cut -f1)
         echo -e "${GREEN}✓ JAR created:${NC} $JAR_FILE (${JAR_SIZE})"
         echo ""
-        echo -e "Run with: ${BLUE}java -jar DataAnalyzerPro.jar${NC}"
+        echo -e "Run with: ${BLUE}java --add-modules jdk.incubator.vector -jar DataAnalyzerPro.jar${NC}"
     else
         echo -e "${RED}✗ JAR creation failed${NC}"
         exit 1
@@ -0,0 +1,75 @@
+package analyzer;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Regression test for quotes that do not open a quoted field: a quote in
+ * the middle of an unquoted cell, and an opening quote that is never
+ * closed. Both load paths must keep every record and every column.
+ *
+ * Run with: java -ea analyzer.CSVLoaderQuoteTest
+ *
+ * @author Lukasz Golinski
+ */
+public class CSVLoaderQuoteTest {
+    
+    private static final int ROWS = 100_000;
+    
+    public static void main(String[] args) throws IOException {
+        File file = File.createTempFile("quotes", ".csv");
+        file.deleteOnExit();
+        
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            out.write("a,b,c\n");
+            out.write("1,5\" screen,2\n");
+            for (int i = 0; i < ROWS; i++) {
+                if (i == ROWS / 2) {
+                    out.write(i + ",\"unclosed," + (3 * i) + "\n");
+                } else if (i == ROWS / 4) {
+                    out.write(i + ",\"" + (2 * i) + "\"," + (3 * i) + "\n");
+                } else {
+                    out.write(i + "," + (2 * i) + "," + (3 * i) + "\n");
+                }
+            }
+        }
+        
+        CSVLoader streaming = new CSVLoader();
+        check("loadFile", streaming.loadFile(file), streaming);
+        
+        CSVLoader parallel = new CSVLoader();
+        parallel.setParallelism(4);
+        check("loadFileParallel", parallel.loadFileParallel(file), parallel);
+        
+        System.out.println("OK");
+    }
+    
+    private static void check(String path, DataModel model, CSVLoader loader) {
+        assertTrue(!loader.hasError(), path + ": unexpected error " + loader.getLastError());
+        assertTrue(model.getTotalRecords() == ROWS + 1,
+                   path + ": expected " + (ROWS + 1) + " records, got " + model.getTotalRecords());
+        
+        /* The stray quote only spoils its own cell */
+        assertTrue(model.getValidCount("a") == ROWS + 1, path + ": column a lost values");
+        assertTrue(model.getValidCount("b") == ROWS - 1, path + ": column b has " + model.getValidCount("b") + " values");
+        assertTrue(model.getValidCount("c") == ROWS, path + ": column c has " + model.getValidCount("c") + " values");
+        
+        ColumnView c = model.getColumn("c");
+        assertTrue(c.get(0) == 2, path + ": stray quote moved the third cell");
+        double sum = 0;
+        for (int row = 1; row <= ROWS; row++) {
+            if (c.isValid(row)) {
+                sum += c.get(row);
+            }
+        }
+        double expected = 3.0 * ROWS * (ROWS - 1) / 2 - 3.0 * (ROWS / 2);
+        assertTrue(sum == expected, path + ": column c sums to " + sum + " instead of " + expected);
+        assertTrue(model.getColumn("b").get(ROWS / 4 + 1) == 2 * (ROWS / 4), path + ": quoted cell misread");
+    }
+    
+    private static void assertTrue(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
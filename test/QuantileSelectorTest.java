@@ -0,0 +1,123 @@
+package analyzer;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks QuantileSelector against Arrays.sort on the same values: single
+ * ranks, several ranks selected in any order, and the finished sort. The
+ * arrays are full of duplicates, -0.0 next to 0.0 and runs of NaN, and come
+ * shuffled, sorted, reversed, as organ pipes and as sawtooths, so
+ * partitions are lopsided and ties are everywhere. Values are compared by
+ * their bits, so -0.0 and 0.0 must land where Arrays.sort puts them.
+ *
+ * Run with: java -ea analyzer.QuantileSelectorTest
+ *
+ * @author Lukasz Golinski
+ */
+public class QuantileSelectorTest {
+    
+    private static final String[] SHAPES = {"shuffled", "sorted", "reversed", "organ pipe", "sawtooth"};
+    
+    public static void main(String[] args) {
+        Random random = new Random(23);
+        
+        for (int trial = 0; trial < 400; trial++) {
+            int size = trial % 50 == 0 ? 200_000 : random.nextInt(3000);
+            String shape = SHAPES[trial % SHAPES.length];
+            double[] values = values(shape, size, 1 + random.nextInt(trial % 3 == 0 ? 4 : 500), random);
+            String name = shape + " of " + size;
+            
+            double[] expected = values.clone();
+            Arrays.sort(expected);
+            if (size == 0) {
+                assertTrue(new QuantileSelector(values.clone()).sorted().length == 0, name + ": not empty");
+                continue;
+            }
+            
+            QuantileSelector single = new QuantileSelector(values.clone());
+            for (int i = 0; i < 20; i++) {
+                int rank = i == 0 ? 0 : i == 1 ? size - 1 : random.nextInt(size);
+                assertSame(name, rank, single.select(rank), expected[rank]);
+            }
+            
+            QuantileSelector several = new QuantileSelector(values.clone());
+            int[] ranks = new int[5];
+            for (int i = 0; i < ranks.length; i++) {
+                ranks[i] = random.nextInt(size);
+            }
+            several.selectAll(ranks);
+            for (int rank : ranks) {
+                assertSame(name, rank, several.select(rank), expected[rank]);
+            }
+            
+            double[] sorted = several.sorted();
+            assertTrue(several.isSorted(), name + ": not sorted after sorted()");
+            for (int rank = 0; rank < size; rank++) {
+                assertSame(name, rank, sorted[rank], expected[rank]);
+            }
+        }
+        
+        System.out.println("OK");
+    }
+    
+    /*
+     * Whole numbers from a small or large pool, with -0.0 for some of the
+     * zeros and a share of NaN, some of it in runs.
+     */
+    private static double[] values(String shape, int size, int distinct, Random random) {
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            double value = random.nextInt(distinct) - distinct / 2;
+            values[i] = value == 0 && random.nextBoolean() ? -0.0 : value;
+        }
+        
+        switch (shape) {
+            case "sorted":
+                Arrays.sort(values);
+                break;
+            case "reversed":
+                Arrays.sort(values);
+                for (int i = 0, j = size - 1; i < j; i++, j--) {
+                    double swap = values[i];
+                    values[i] = values[j];
+                    values[j] = swap;
+                }
+                break;
+            case "organ pipe":
+                for (int i = 0; i < size; i++) {
+                    values[i] = Math.min(i, size - 1 - i) % Math.max(1, distinct);
+                }
+                break;
+            case "sawtooth":
+                for (int i = 0; i < size; i++) {
+                    values[i] = i % Math.max(2, distinct);
+                }
+                break;
+            default:
+                break;
+        }
+        
+        for (int i = 0; i < size; i++) {
+            if (random.nextInt(10) == 0) {
+                int run = 1 + random.nextInt(5);
+                for (int j = i; j < Math.min(size, i + run); j++) {
+                    values[j] = Double.NaN;
+                }
+                i += run;
+            }
+        }
+        return values;
+    }
+    
+    private static void assertSame(String name, int rank, double actual, double expected) {
+        assertTrue(Double.doubleToLongBits(actual) == Double.doubleToLongBits(expected),
+                   name + ": rank " + rank + " is " + actual + ", expected " + expected);
+    }
+    
+    private static void assertTrue(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
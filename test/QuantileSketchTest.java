@@ -0,0 +1,115 @@
+package analyzer;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks that QuantileSketch stays within the rank error it states, 2 / k
+ * of the count, against the exact ranks of the sorted values. Streams
+ * arrive shuffled, ascending, descending and with long runs of repeated
+ * values, and one sketch is merged from sketches over separate parts. The
+ * sketch seeds its own random choices, so every run gives the same
+ * answers.
+ *
+ * Run with: java -ea analyzer.QuantileSketchTest
+ *
+ * @author Lukasz Golinski
+ */
+public class QuantileSketchTest {
+    
+    private static final int ROWS = 500_000;
+    private static final double[] FRACTIONS = {
+        0.001, 0.01, 0.05, 0.1, 0.25, 0.333, 0.5, 0.667, 0.75, 0.9, 0.95, 0.99, 0.999
+    };
+    
+    public static void main(String[] args) {
+        Random random = new Random(17);
+        
+        double[] shuffled = new double[ROWS];
+        double[] repeated = new double[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            shuffled[i] = random.nextGaussian() * 1e3;
+            repeated[i] = random.nextInt(50);
+        }
+        double[] ascending = shuffled.clone();
+        Arrays.sort(ascending);
+        double[] descending = new double[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            descending[i] = ascending[ROWS - 1 - i];
+        }
+        
+        for (int k : new int[]{QuantileSketch.DEFAULT_K, 64}) {
+            check("shuffled", k, shuffled, sketch(k, shuffled, 0, ROWS));
+            check("ascending", k, ascending, sketch(k, ascending, 0, ROWS));
+            check("descending", k, descending, sketch(k, descending, 0, ROWS));
+            check("repeated", k, repeated, sketch(k, repeated, 0, ROWS));
+            
+            QuantileSketch merged = sketch(k, shuffled, 0, ROWS / 3);
+            merged.merge(sketch(k, shuffled, ROWS / 3, ROWS / 2));
+            merged.merge(sketch(k, shuffled, ROWS / 2, ROWS));
+            check("merged", k, shuffled, merged);
+        }
+        
+        System.out.println("OK");
+    }
+    
+    private static QuantileSketch sketch(int k, double[] values, int from, int to) {
+        QuantileSketch sketch = new QuantileSketch(k);
+        for (int i = from; i < to; i++) {
+            sketch.add(values[i]);
+        }
+        return sketch;
+    }
+    
+    /*
+     * The answer for a fraction may be any value whose ranks in the sorted
+     * values, from the first to the last copy of it, come within the bound
+     * of the rank asked for.
+     */
+    private static void check(String name, int k, double[] values, QuantileSketch sketch) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int n = sorted.length;
+        
+        assertTrue(sketch.getCount() == n, name + ": count " + sketch.getCount() + ", expected " + n);
+        assertTrue(sketch.getMinimum() == sorted[0] && sketch.getMaximum() == sorted[n - 1],
+                   name + ": extremes are not exact");
+        /* Capacities shrink geometrically from k at the top, but no level is narrower than 8 */
+        assertTrue(sketch.getRetainedCount() < 3 * k + 8 * (64 - Long.numberOfLeadingZeros(n)),
+                   name + ": " + sketch.getRetainedCount() + " values retained with k = " + k);
+        
+        double bound = 2.0 / k * n;
+        for (double fraction : FRACTIONS) {
+            double answer = sketch.getQuantile(fraction);
+            double rank = fraction * (n - 1);
+            
+            int first = lowerBound(sorted, answer);
+            int last = lowerBound(sorted, Math.nextUp(answer)) - 1;
+            assertTrue(first <= last, name + ": " + answer + " is not one of the values");
+            
+            double error = rank < first ? first - rank : rank > last ? rank - last : 0.0;
+            assertTrue(error <= bound, name + " k = " + k + ": rank of the " + fraction + " quantile off by " +
+                       error + ", more than " + bound);
+        }
+    }
+    
+    private static int lowerBound(double[] sorted, double value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    private static void assertTrue(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package analyzer;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Random;
+
+/**
+ * Checks the moments StatisticsEngine computes in one fused pass against
+ * the textbook two-pass formulas, the mean first and then the sums of
+ * powers of the deviations from it, worked out in decimal arithmetic so
+ * that the reference itself loses nothing. Covers short and long columns (the latter
+ * take the fork/join path), missing values, columns kept off the heap and
+ * values with a large offset, where one-pass raw power sums would lose
+ * every digit. The bounds are the ones StatisticsEngine states for its
+ * parallel path: 1e-11 relative for the sums and 1e-8 for skewness and
+ * kurtosis.
+ *
+ * Run with: java -ea analyzer.StatisticsMomentsTest
+ *
+ * @author Lukasz Golinski
+ */
+public class StatisticsMomentsTest {
+    
+    private static final double TOLERANCE = 1e-11;
+    private static final double SHAPE_TOLERANCE = 1e-8;
+    
+    public static void main(String[] args) {
+        /* Long columns only take the fork/join path when the pool has threads to spare */
+        System.setProperty("java.util.concurrent.ForkJoinPool.common.parallelism", "4");
+        Random random = new Random(11);
+        
+        check("small", column(ColumnStorage.HEAP, 1000, 0.0, 0.0, random));
+        check("gaps", column(ColumnStorage.HEAP, 50_000, 0.0, 0.2, random));
+        check("offset", column(ColumnStorage.HEAP, 50_000, 1e9, 0.0, random));
+        check("parallel", column(ColumnStorage.HEAP, 1_300_000, 1e6, 0.1, random));
+        check("off-heap", column(ColumnStorage.DIRECT, 200_000, 100.0, 0.1, random));
+        
+        System.out.println("OK");
+    }
+    
+    /*
+     * Skewed values about offset, with a share of the rows left missing.
+     */
+    private static NumericColumn column(ColumnStorage storage, int rows, double offset, double missing,
+                                        Random random) {
+        NumericColumn column = storage.createColumn();
+        for (int i = 0; i < rows; i++) {
+            if (random.nextDouble() < missing) {
+                column.add(Double.NaN);
+            } else {
+                double gaussian = random.nextGaussian();
+                column.add(offset + gaussian + 0.3 * gaussian * gaussian);
+            }
+        }
+        return column;
+    }
+    
+    private static void check(String name, NumericColumn column) {
+        double[] values = column.toValidArray();
+        int n = values.length;
+        
+        MathContext context = MathContext.DECIMAL128;
+        BigDecimal sum = BigDecimal.ZERO;
+        for (double value : values) {
+            sum = sum.add(new BigDecimal(value));
+        }
+        BigDecimal exactMean = sum.divide(BigDecimal.valueOf(n), context);
+        
+        BigDecimal exactSquares = BigDecimal.ZERO;
+        BigDecimal exactCubes = BigDecimal.ZERO;
+        BigDecimal exactFourths = BigDecimal.ZERO;
+        BigDecimal exactAbsolute = BigDecimal.ZERO;
+        for (double value : values) {
+            BigDecimal diff = new BigDecimal(value).subtract(exactMean, context);
+            BigDecimal squared = diff.multiply(diff, context);
+            exactSquares = exactSquares.add(squared, context);
+            exactCubes = exactCubes.add(squared.multiply(diff, context), context);
+            exactFourths = exactFourths.add(squared.multiply(squared, context), context);
+            exactAbsolute = exactAbsolute.add(diff.abs(), context);
+        }
+        
+        double mean = exactMean.doubleValue();
+        double squares = exactSquares.doubleValue();
+        double cubes = exactCubes.doubleValue();
+        double fourths = exactFourths.doubleValue();
+        double absolute = exactAbsolute.doubleValue();
+        
+        double variance = squares / (n - 1);
+        double stdDev = Math.sqrt(variance);
+        double skewness = n / ((n - 1.0) * (n - 2.0)) * cubes / (stdDev * stdDev * stdDev);
+        double kurtosis = n * (n + 1.0) / ((n - 1.0) * (n - 2.0) * (n - 3.0)) * fourths / (variance * variance)
+                        - 3 * (n - 1.0) * (n - 1.0) / ((n - 2.0) * (n - 3.0));
+        
+        StatisticsEngine engine = new StatisticsEngine();
+        engine.loadData(column);
+        
+        assertTrue(engine.getCount() == n, name + ": count " + engine.getCount() + ", expected " + n);
+        assertClose(name, "mean", engine.getMean(), mean, TOLERANCE);
+        assertClose(name, "sample variance", engine.getVariance(), variance, TOLERANCE);
+        assertClose(name, "population variance", engine.getPopulationVariance(), squares / n, TOLERANCE);
+        assertClose(name, "standard deviation", engine.getStandardDeviation(), stdDev, TOLERANCE);
+        /* Moves with the mean, so it may be off by as much as the mean is */
+        double meanError = Math.max(Math.ulp(mean), TOLERANCE * Math.abs(mean));
+        assertTrue(Math.abs(engine.getMeanAbsoluteDeviation() - absolute / n) <= meanError + TOLERANCE,
+                   name + ": mean absolute deviation " + engine.getMeanAbsoluteDeviation() + ", expected " + absolute / n);
+        assertClose(name, "skewness", engine.getSkewness(), skewness, SHAPE_TOLERANCE);
+        assertClose(name, "kurtosis", engine.getKurtosis(), kurtosis, SHAPE_TOLERANCE);
+        
+        column.clear();
+    }
+    
+    private static void assertClose(String name, String statistic, double actual, double expected,
+                                    double tolerance) {
+        double scale = Math.max(1.0, Math.abs(expected));
+        assertTrue(Math.abs(actual - expected) <= tolerance * scale,
+                   name + ": " + statistic + " " + actual + ", expected " + expected);
+    }
+    
+    private static void assertTrue(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}